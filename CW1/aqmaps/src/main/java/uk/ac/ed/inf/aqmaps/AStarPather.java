@@ -1,50 +1,78 @@
 package uk.ac.ed.inf.aqmaps;
 
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.HashMap;
-
-import org.javatuples.Pair;
+import java.util.LinkedHashMap;
+import java.util.PriorityQueue;
 
 /**
- * Astar implementation of the Pather interface
+ * Astar implementation of the Pather interface<br>
+ * All of the state of a search is local to the call of path, so once the pather has been set up any number of threads can search with it at once.
  * 
  * @author Yannik Nelson
  *
  */
 public class AStarPather implements Pather {
 	
-	private ArrayList<ArrayList<Location>> boundingBoxes = new ArrayList<ArrayList<Location>>();
-	private HashMap<ArrayList<Location>, ArrayList<Location>> noFlyZones = new HashMap<ArrayList<Location>, ArrayList<Location>>();
-	private Double UPPERBOUND = 0.0;
-	private Double LOWERBOUND = 0.0;
-	private Double LEFTBOUND = 0.0;
-	private Double RIGHTBOUND = 0.0;
-	private Double STEPSIZE = 0.0003;
+	//the configuration is volatile so searches running on other threads always see the latest values once the setters return
+	private volatile ArrayList<ArrayList<Location>> boundingBoxes = new ArrayList<ArrayList<Location>>();
+	private volatile HashMap<ArrayList<Location>, ArrayList<Location>> noFlyZones = new HashMap<ArrayList<Location>, ArrayList<Location>>();
+	private volatile double UPPERBOUND = 0.0;
+	private volatile double LOWERBOUND = 0.0;
+	private volatile double LEFTBOUND = 0.0;
+	private volatile double RIGHTBOUND = 0.0;
+	private volatile double STEPSIZE = 0.0003;
+	//size of the lattice positions are snapped to, 0 leaves positions continuous
+	private volatile double LATTICE = 0.0;
+	//in the discretised mode the number of states across a step, cells a step wide prune too many good positions and give noticeably longer paths
+	private static final int CELLSPERSTEP = 4;
+	//the zones the geometry was last built from
+	private volatile ArrayList<ArrayList<Location>> source;
 	
 	
 	public void setNoFlyZones(ArrayList<ArrayList<Location>> noFlyZones) {
-		this.boundingBoxes = new ArrayList<ArrayList<Location>>();
-		this.noFlyZones = new HashMap<ArrayList<Location>, ArrayList<Location>>();
+		//the Client hands back the same zones when they haven't changed, so there's nothing to rebuild
+		if (noFlyZones == source) {
+			return;
+		}
+		var boxes = new ArrayList<ArrayList<Location>>();
+		var zones = new HashMap<ArrayList<Location>, ArrayList<Location>>();
 		//for each noFlyZone find its bounding box, save it and save the no fly zone in the noFlyZones hashmap with the index of its bounding box
 		for (ArrayList<Location> z: noFlyZones) {
 			ArrayList<Location> temp = boundsFromLocationList(z);
-			this.boundingBoxes.add(temp);
-			this.noFlyZones.put(temp,  z);
+			boxes.add(temp);
+			zones.put(temp,  z);
 		}
+		//only replace the old geometry once the new geometry is complete
+		this.noFlyZones = zones;
+		this.boundingBoxes = boxes;
+		this.source = noFlyZones;
 	}
 	
-	public void setBounds(Double ub, Double lob, Double leb, Double rb) {
+	public void setBounds(double ub, double lob, double leb, double rb) {
 		this.UPPERBOUND = ub;
 		this.LOWERBOUND = lob;
 		this.LEFTBOUND = leb;
 		this.RIGHTBOUND = rb;
 	}
 	
-	public void setStepSize(Double ss) {
+	public void setStepSize(double ss) {
 		this.STEPSIZE = ss;
 	}
 	
+	/**
+	 * Turns on the discretised search mode, where every position reached is snapped to a square lattice of the passed in size, so the same query
+	 * always produces exactly the same positions. Each snapped step differs from the step size by at most the lattice size.<br>
+	 * Instead of checking every candidate against the distance to the visited positions, each state is identified by a packed long key of the
+	 * cell (a quarter of a step wide) its position falls in, so duplicates are found with a single hash lookup and at most one state is expanded per cell.
+	 * 
+	 * @param resolution The lattice size in degrees, or 0 to turn the discretised mode off
+	 */
+	@Override
+	public void setLatticeResolution(double resolution) {
+		this.LATTICE = resolution;
+	}
+	
 	/**
 	 * 
 	 * Takes in a list of points and returns the corners of their bounding box
@@ -54,10 +82,10 @@ public class AStarPather implements Pather {
 	 */
 	private ArrayList<Location> boundsFromLocationList(ArrayList<Location> pts) {
 		//initialise the max and min longitudes and latitudes to those of the first point, this ensures they will converge on the correct values
-		Double north = pts.get(0).latitude();
-		Double south = pts.get(0).latitude();
-		Double east = pts.get(0).longitude();
-		Double west = pts.get(0).longitude();
+		double north = pts.get(0).latitude();
+		double south = pts.get(0).latitude();
+		double east = pts.get(0).longitude();
+		double west = pts.get(0).longitude();
 		
 		//run through the points and find the maximum and minimum longitude and latitude values
 		for (Location p: pts) {
@@ -86,71 +114,112 @@ public class AStarPather implements Pather {
 
 	@Override
 	/**
-	 * Performs an A* search to find the shortest path (in terms of steps) to the passed in Node (or Node subclass).
+	 * Performs an A* search to find the shortest path (in terms of steps) to the passed in Node (or Node subclass).<br>
+	 * The frontier is held in a binary heap keyed on the expected total cost of each search node, and each search node only
+	 * stores a pointer to its parent so the path is only built once the destination has been reached.
 	 * 
 	 * @param end The desired destination point.
 	 * @return A list of pairs Nodes (or Node subclass) and angles representing the locations visited at each step and the angle between them.
 	 */
-	public ArrayList<Pair<Location, Integer>> path(Location start, Location end, Double tolerance) {
-		//Create a Comparator that will compare possible paths and return an order based on the total expected cost to get to the end Point
-		var comparator = new AStarNodeComparison(end, this, this.STEPSIZE);
-		//List of all current possible paths (called branches due to the tree like nature of the search)
-		ArrayList<ArrayList<Pair<Location, Integer>>> branches = new ArrayList<>();
-		//Create the first node (tree node) in the search tree containing just the current Node (or Node subclass)
-		var base = new ArrayList<Pair<Location,Integer>>();
-		var triedAgain = false;
-		base.add(new Pair<Location,Integer>(start, -1));
-		//Add the first (tree) node to the branches list
-		branches.add(base);
-		//initialise the visited list to and empty ArrayList
-		ArrayList<Location> visited = new ArrayList<>();
-		//Iteratively expand upon the current best paths, then ordering the new branches and repeating until the destination is reached
-		while (branches.size() > 0) {
-			//get the current best path
-			ArrayList<Pair<Location, Integer>> current = branches.get(0);
-			//if the current best path is within 0.0002 degrees of the destination we've reached the destination so return the path
-			if (findDistance(current.get(current.size()-1).getValue0(), end) < tolerance ) {
-				//if the current path consists of only one node try and move once more, if it doesn't work pick a random next point move there and move back
-				if (current.size() == 1) {
-					if (triedAgain) {
-						HashMap<Location,Integer> deviation = reachable(current.get(current.size()-1).getValue0(), new ArrayList<Location>());
-						ArrayList<Location> deviationNodes = new ArrayList<Location>(deviation.keySet());
-						current.add(new Pair<Location,Integer>(deviationNodes.get(0), deviation.get(deviationNodes.get(0))));
-						current.add(current.get(0));
-					}
-					triedAgain = true;
-				}
-				if (current.size() > 1) {
-					return current;
+	public FlightPath path(Location start, Location end, double tolerance) {
+		//counter used to break ties between search nodes in the order they were created, keeping the search deterministic
+		long created = 0;
+		//Create the root of the search tree containing just the start location
+		var root = new AStarSearchNode(start, -1, null, 0, getHeuristic(start, end), created++);
+		//if we are already within range of the destination the drone still has to move, so step to any reachable point and come straight back
+		if (findDistance(start, end) < tolerance) {
+			return deviate(root);
+		}
+		//The frontier of the search, ordered so that the search node with the lowest expected total cost is always at the head
+		var frontier = new PriorityQueue<AStarSearchNode>();
+		frontier.add(root);
+		//initialise the visited (closed) set to an empty grid with cells the size of a step
+		SpatialGrid visited = null;
+		//in the discretised mode the closed set is instead the fewest steps each state has been reached in and which states have been expanded
+		LongIntHashMap reached = null;
+		LongIntHashMap expanded = null;
+		if (LATTICE > 0) {
+			reached = new LongIntHashMap();
+			expanded = new LongIntHashMap();
+			reached.put(stateKey(start.longitude(), start.latitude()), 0);
+		} else {
+			visited = new SpatialGrid(STEPSIZE);
+		}
+		//Iteratively expand the current best search node until the destination is reached or there is nothing left to expand
+		while (!frontier.isEmpty()) {
+			//get the current best search node
+			var current = frontier.poll();
+			//a state can be pushed more than once before it's expanded, only the first (best) copy needs expanding
+			if (expanded != null) {
+				long key = stateKey(current.location.longitude(), current.location.latitude());
+				if (expanded.containsKey(key)) {
+					continue;
 				}
+				expanded.put(key, current.steps);
 			}
-			//otherwise get the list of next possible points, use them to create the next possible branches and add them all to the branches list
-			HashMap<Location, Integer> available = reachable(current.get(current.size()-1).getValue0(), visited);
-			ArrayList<Location> nodes = new ArrayList<Location>(available.keySet());
-			//remember to remove the branch we just expanded
-			if (!triedAgain) {
-				branches.remove(current);
+			//if the current best search node is within the tolerance of the destination we've reached it so build and return the path
+			if (findDistance(current.location, end) < tolerance) {
+				return current.toPath();
 			}
-			for (Location n: nodes) {
-				if (visited.contains(n)) {
-					continue;
-				}
-				var temp = (ArrayList<Pair<Location, Integer>>) current.clone();
-				temp.add(new Pair<Location,Integer>(n, available.get(n)));
-				branches.add(temp);
+			//otherwise get the list of next possible points and push a search node for each of them onto the frontier
+			HashMap<Location, Integer> available = reachable(current.location, visited, reached, current.steps + 1);
+			for (var n: available.keySet()) {
+				frontier.add(new AStarSearchNode(n, available.get(n), current, current.steps + 1, getHeuristic(n, end), created++));
 			}
-			//sort the new branches based on their expected cost
-			branches.sort(comparator);
-			//add the node we just expanded to the visited list
-			if (!triedAgain) {
-				visited.add(current.get(current.size()-1).getValue0());
+			//add the location we just expanded to the visited set
+			if (visited != null) {
+				visited.add(current.location);
 			}
 		}
-		return base;
+		return root.toPath();
 	}
 	
+	/**
+	 * 
+	 * Builds the path used when the start is already within range of the destination, the drone moves to the first reachable point and
+	 * then flies straight back to where it started.
+	 * 
+	 * @param root The search node holding the start location
+	 * @return The path out to a reachable point and back, or just the start if the drone cannot move at all
+	 */
+	private FlightPath deviate(AStarSearchNode root) {
+		var path = root.toPath();
+		HashMap<Location, Integer> deviation = reachable(root.location, new SpatialGrid(STEPSIZE), null, 1);
+		if (deviation.isEmpty()) {
+			return path;
+		}
+		var out = deviation.keySet().iterator().next();
+		var angle = deviation.get(out);
+		path.add(out, angle);
+		//flying at the opposite angle returns the drone to the start
+		path.add(root.location, (angle + 180) % 360);
+		return path;
+	}
+	
+	/**
+	 * 
+	 * @param a The location the estimate is from
+	 * @param goal The desired destination Node
+	 * @return The exact number of expected steps if the Drone could move to the goal in a straight line as a Double
+	 */
+	private double getHeuristic(Location a, Location goal) {
+		return findDistance(a, goal)/STEPSIZE;
+	}
+	
+	/**
+	 * 
+	 * Packs the cell a position falls in into a single key, the longitude index in the high 32 bits and the latitude index in the low 32 bits
+	 * 
+	 * @param lon The longitude of the position
+	 * @param lat The latitude of the position
+	 * @return The key of the state the position belongs to
+	 */
+	private long stateKey(double lon, double lat) {
+		long x = (long) Math.floor(lon/(STEPSIZE/CELLSPERSTEP));
+		long y = (long) Math.floor(lat/(STEPSIZE/CELLSPERSTEP));
+		return (x << 32) | (y & 0xffffffffL);
+	}
 	
-
 	/**
 	 * 
 	 * Takes in two points and return the Euclidean distance between them.
@@ -160,7 +229,7 @@ public class AStarPather implements Pather {
 	 * @return The Distance between the passed in points as a Double.
 	 * @see com.mapbox.geojson.Point
 	 */
-	public Double findDistance(Location p1, Location p2) {
+	public double findDistance(Location p1, Location p2) {
 		return Math.sqrt(Math.pow(p1.longitude() - p2.longitude(),2) + Math.pow(p1.latitude() - p2.latitude(),2));
 	}
 	
@@ -195,8 +264,8 @@ public class AStarPather implements Pather {
 	 * @return Integer corresponding to the orientation of the three passed in points.
 	 */
 	private int orientation(Location a, Location b, Location c) { 
-	        Double val = (b.latitude() - a.latitude()) * (c.longitude() - b.longitude()) - (c.latitude() - b.latitude()) * (b.longitude() - a.longitude()); 
-	        return val.compareTo(0.0);
+	        double val = (b.latitude() - a.latitude()) * (c.longitude() - b.longitude()) - (c.latitude() - b.latitude()) * (b.longitude() - a.longitude()); 
+	        return Double.compare(val, 0.0);
 	} 
 	  
     /**
@@ -260,34 +329,45 @@ public class AStarPather implements Pather {
 	 * Also excludes points outside the designated area.
 	 * 
 	 * 
-	 * @param visited ArrayList of Node (or node subclass) that have already been visited and thus we don't want to be too close to.
+	 * @param visited Grid of the Locations that have already been visited and thus we don't want to be too close to, null in the discretised mode.
+	 * @param reached In the discretised mode the fewest steps each state has been reached in, otherwise null. Updated with the returned points.
+	 * @param steps The number of steps taken to reach the returned points
 	 * @return mapping of possible next step from the current node to their angle relative to the current node.
 	 */
-	private HashMap<Location, Integer> reachable(Location node, ArrayList<Location> visited) {
-		HashMap<Location, Integer> nextPoints = new HashMap<>();
+	private HashMap<Location, Integer> reachable(Location node, SpatialGrid visited, LongIntHashMap reached, int steps) {
+		//keep the angles in the order they were tried so the search expands them deterministically
+		HashMap<Location, Integer> nextPoints = new LinkedHashMap<>();
 		
 		//for all possible angles around the current point (the drone can only move at angles divisible by 5)
 		outerloop:
-		for (Integer i = 0 ; i < 360; i += 5) {
+		for (int i = 0 ; i < 360; i += 5) {
 			//find the new longitude and latitude and gives up on the Point at this angle if the Point will be outside the designated flying area
 			var lon = node.longitude() + STEPSIZE * Math.cos(Math.toRadians(i));
+			var lat = node.latitude() + STEPSIZE * Math.sin(Math.toRadians(i));
+			//in the discretised mode snap the point to the lattice and give up on it if its state has already been reached in as few steps
+			long key = 0;
+			if (reached != null) {
+				lon = Math.round(lon/LATTICE) * LATTICE;
+				lat = Math.round(lat/LATTICE) * LATTICE;
+				key = stateKey(lon, lat);
+				if (reached.get(key, Integer.MAX_VALUE) <= steps) {
+					continue;
+				}
+			}
 			if (lon > RIGHTBOUND || lon < LEFTBOUND) {
 				continue;
 			}
-			var lat = node.latitude() + STEPSIZE * Math.sin(Math.toRadians(i));
 			if (lat > UPPERBOUND || lat < LOWERBOUND) {
 				continue;
 			}
 			
-			var loc = new Node(lon,lat);
-			
 			//If the new point is less than a step away from any of the visited points then give up on the Point at this angle
-			for (Location p: visited) {
-				if (findDistance(p, loc) < 0.0003) {
-					continue outerloop;
-				}
+			if (visited != null && visited.anyWithin(lon, lat, 0.0003)) {
+				continue;
 			}
 			
+			var loc = new Node(lon,lat);
+			
 			//If the point will be in the designated area then we check if the point is inside or would intersect the sides of any of the no fly zones bounding boxes
 			//If either of those is the case we then check if the line from the current point to the point being created intersects any of the sides of the no fly zone
 			//If the line does intersect we give up on the Point at this angle
@@ -305,6 +385,9 @@ public class AStarPather implements Pather {
 			
 			//If none of the checks have triggered then the current point is valid so we add it to the mapping to be returned with its angle
 			nextPoints.put(loc,i);
+			if (reached != null) {
+				reached.put(key, steps);
+			}
 		}
 		return nextPoints;
 	}
@@ -312,51 +395,68 @@ public class AStarPather implements Pather {
 }
 
 /**
- * Custom comparator for comparing paths based on the total expected cost of said paths
+ * A single node in the A* search tree, holding the location reached, the angle flown to reach it and a pointer to the node it was reached from
+ * 
  * @author Yannik Nelson
  *
- * @param <T>
  */
-class AStarNodeComparison implements Comparator<ArrayList<Pair<Location, Integer>>>  {
+class AStarSearchNode implements Comparable<AStarSearchNode> {
+	
+	final Location location;
+	final int angle;
+	final AStarSearchNode parent;
+	final int steps;
+	private final double heuristic;
+	private final double expectedCost;
+	private final long order;
 	
-	private Location goal;
-	private Pather p;
-	private Double STEPSIZE;
 	/**
 	 * 
-	 * @param goal The desired destination Node. This is required to calculate the cost and cannot be passed in at time of comparison
+	 * @param location The location reached by this search node
+	 * @param angle The angle flown from the parent to reach the location (-1 for the root)
+	 * @param parent The search node this one was expanded from (null for the root)
+	 * @param steps The number of steps taken from the root to reach this search node
+	 * @param heuristic The straight line number of steps from the location to the destination
+	 * @param order The creation order of the search node, used to break ties
 	 */
-	AStarNodeComparison(Location goal, Pather p, Double ss){
-		this.goal = goal;
-		this.p = p;
-		this.STEPSIZE = ss;
+	AStarSearchNode(Location location, int angle, AStarSearchNode parent, int steps, double heuristic, long order) {
+		this.location = location;
+		this.angle = angle;
+		this.parent = parent;
+		this.steps = steps;
+		this.heuristic = heuristic;
+		//I scale the heuristic to the ceiling of the straight line step count
+		//I do this as the restriction of only moving at angles that divide by 5 means taking a step sometimes adds more to the f value than is lost in the heuristic from the new end node
+		//Rounding up gives the realistic number of steps left while keeping the heuristic mostly consistent
+		this.expectedCost = steps + Math.ceil(heuristic);
+		this.order = order;
 	}
 	
 	/**
-	 * Returns the ordering of the paths based off of their total expected costs
+	 * Returns the ordering of the search nodes based off of their total expected costs, preferring the node closer to the destination and then the older node on ties
 	 */
-	public int compare(ArrayList<Pair<Location, Integer>> a, ArrayList<Pair<Location, Integer>> b) {
-		//I scale the heuristics here to emphasise their difference
-		//I do this as the restriction of only moving at angles that divide by 5 means taking a step sometimes adds more to the f value than is lost in the heuristic from the new end node
-		//This means it has to go back and check the old values that are now better, to fix this I scale the heuristic by the biggest number i can while keeping the heuristic mostly consistent
-		Double ah = getHeuristic(a.get(a.size()-1).getValue0());
-		Double bh = getHeuristic(b.get(b.size()-1).getValue0());
-		//To try and keep the heuristic consistent I assume the realistic length will be the ceiling of the heuristic (the distance to the point divided by the step size)
-		//I then divide those by their actual heuristic and take the minimum of the two values to find the amount i can scale the heuristics to keep them consistent (based on the above assumption) 
-		Double scale = Math.min(Math.ceil(ah)/ah, Math.ceil(bh)/bh);
-		Double fa = a.size() - 1 + ah*scale;
-		if (Double.isNaN(scale)) {
-			scale = 1.0;
+	public int compareTo(AStarSearchNode o) {
+		int c = Double.compare(expectedCost, o.expectedCost);
+		if (c == 0) {
+			c = Double.compare(heuristic, o.heuristic);
+		}
+		if (c == 0) {
+			c = Long.compare(order, o.order);
 		}
-		return fa.compareTo(b.size() - 1 + bh*scale);
+		return c;
 	}
 	
 	/**
+	 * Follows the parent pointers back to the root to build the path that reached this search node
 	 * 
-	 * @param goal The desired destination Node
-	 * @return The exact number of expected steps if the Drone could move to the goal in a straight line as a Double
+	 * @return Every position visited from the root with the angle the drone flew at to reach it from the last
 	 */
-	Double getHeuristic(Location a){
-		return p.findDistance(a, this.goal)/STEPSIZE;
+	FlightPath toPath() {
+		var path = new FlightPath(steps + 1);
+		for (var n = this; n != null; n = n.parent) {
+			path.add(n.location, n.angle);
+		}
+		path.reverse();
+		return path;
 	}
 }
@@ -1,8 +1,17 @@
 package uk.ac.ed.inf.aqmaps;
 
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import com.google.gson.JsonParseException;
 
 /**
  * Main Class used to create the required objects and call the plan fly and output functions for the Drone based on the arguements
@@ -12,10 +21,12 @@ public class App
 {
 	
 	//Constants that hold the boundaries of the area we can fly in
-	private static final Double UPPERBOUND = 55.946233;
-	private static final Double LOWERBOUND = 55.942617;
-	private static final Double LEFTBOUND = -3.192473;
-	private static final Double RIGHTBOUND = -3.184319;
+	private static final double UPPERBOUND = 55.946233;
+	private static final double LOWERBOUND = 55.942617;
+	private static final double LEFTBOUND = -3.192473;
+	private static final double RIGHTBOUND = -3.184319;
+	//Constant that defines the step size of the drone
+	private static final double STEPSIZE = 0.0003;
 	
 	//Constants that give meaning to the indices of the args array
 	private static final int DAYINDX = 0;
@@ -24,25 +35,233 @@ public class App
 	private static final int LATTINDX = 3;
 	private static final int LONGINDX = 4;
 	private static final int SEEDINDX = 5;
+	//the port of the server, or the path of a copy of its tree to read instead
 	private static final int PORTINDX = 6;
+	//optional, "mmas" to use the MAX-MIN Ant System, "lk" to use iterated Lin-Kernighan or "exact" to search for the optimal tour instead of the fixed length Ant Colony Optimisation,
+	//or "orienteering" ("orienteering-weighted" to favour sensors needing attention) to only plan for the sensors that fit in the step limit
+	private static final int SOLVERINDX = 7;
+	//optional, the size in degrees of the lattice the A* search snaps positions to, leaving it out (or 0) keeps positions continuous
+	private static final int LATTICEINDX = 8;
+	
+	//Constants that give meaning to the indices of the args array when warming the path table
+	private static final int WARMFIRSTYEARINDX = 1;
+	private static final int WARMLASTYEARINDX = 2;
+	private static final int WARMPORTINDX = 3;
+	//optional, the lattice as in LATTICEINDX, the table is only used by runs with the same lattice
+	private static final int WARMLATTICEINDX = 4;
+	
+	//Constants that give meaning to the indices of the args array when flying a range of days
+	private static final int BATCHFIRSTINDX = 1;
+	private static final int BATCHLASTINDX = 2;
+	private static final int BATCHLATTINDX = 3;
+	private static final int BATCHLONGINDX = 4;
+	private static final int BATCHSEEDINDX = 5;
+	private static final int BATCHPORTINDX = 6;
+	//optional, the solver as in SOLVERINDX
+	private static final int BATCHSOLVERINDX = 7;
+	//optional, the lattice as in LATTICEINDX
+	private static final int BATCHLATTICEINDX = 8;
+	//format of the dates of a batch, the same as the output file names
+	private static final DateTimeFormatter BATCHDATE = DateTimeFormatter.ofPattern("dd-MM-yyyy");
 	
     public static void main(String[] args) {
-    	var generator = new Random();
-    	generator.setSeed(Integer.parseInt(args[SEEDINDX]));
-		
-		//create the client that will handle all server communication
-		ClientWrapper client = new Client(Integer.parseInt(args[PORTINDX]));
-		
+    	//"warm <first year> <last year> <port> [lattice]" builds the path table instead of flying
+    	if (args[0].equals("warm")) {
+    		warm(args);
+    		return;
+    	}
+    	//"batch <first date> <last date> <latitude> <longitude> <seed> <port> [solver] [lattice]" flies every day in the range
+    	if (args[0].equals("batch")) {
+    		batch(args);
+    		return;
+    	}
 		Sensor start = new SensorNode("", Double.parseDouble(args[LONGINDX]),Double.parseDouble(args[LATTINDX]),0.0, "");
-		Pather p = new AStarPather();
-		Drone drone = new DevelopmentDrone(p, new TSPSolution(p, generator), new StepLogger(p), new GeoJsonVisualiser(), client, start, UPPERBOUND, LOWERBOUND, LEFTBOUND, RIGHTBOUND, 0.0003);
-		try {
-			var order = drone.Plan(start, args[DAYINDX], args[MONTHINDX], args[YEARINDX]);
-			drone.Fly(order, start);
-			drone.ProduceOutput(args[DAYINDX], args[MONTHINDX], args[YEARINDX]);
+		var solverWorkers = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		//create the pather and the client that will handle all server communication, closing them once the day is flown
+		try (Pather p = createPather(); ClientWrapper client = createClient(args[PORTINDX])) {
+			configurePather(p, client, lattice(args, LATTICEINDX));
+			flyDay(client, p, solverWorkers, args.length > SOLVERINDX ? args[SOLVERINDX] : "", Integer.parseInt(args[SEEDINDX]), start, args[DAYINDX], args[MONTHINDX], args[YEARINDX]);
 		} catch (IOException | InterruptedException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
+		} finally {
+			solverWorkers.shutdown();
+		}
+    }
+    
+    /**
+     * Plans and flies a single day and saves its outputs
+     * 
+     * @param client The client used for all server communication
+     * @param p The pather used for all path finding, already configured, it must allow concurrent searches if days are flown at once
+     * @param solverWorkers The pool the solver runs its searches on, shared between days
+     * @param solverName The solver to plan with, as in the SOLVERINDX argument, empty for the Ant Colony Optimisation
+     * @param seed The seed of the random number generator used by the solver
+     * @param start The start position
+     * @param day The day of the date to fly
+     * @param month The month of the date to fly
+     * @param year The year of the date to fly
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private static void flyDay(ClientWrapper client, Pather p, ForkJoinPool solverWorkers, String solverName, Integer seed, Sensor start, String day, String month, String year) throws IOException, InterruptedException {
+    	var generator = new Random();
+    	generator.setSeed(seed);
+    	try (var solver = createSolver(solverName, p, generator, solverWorkers)) {
+    		Drone drone = new DevelopmentDrone(p, solver, new StepLogger(p), new GeoJsonVisualiser(), client);
+    		var order = drone.Plan(start, day, month, year);
+    		drone.Fly(order, start);
+    		drone.ProduceOutput(day, month, year);
+    	}
+    }
+    
+    /**
+     * 
+     * @param name The solver to create, as in the SOLVERINDX argument, anything else gives the Ant Colony Optimisation
+     * @param p The pather used to find the paths between the sensors
+     * @param generator The random number generator used by the solver
+     * @param workers The pool the solver runs on, it's left running when the solver is closed
+     * @return The solver, which must be closed once the day is planned
+     */
+    private static TSPSolution createSolver(String name, Pather p, Random generator, ForkJoinPool workers) {
+		if (name.equals("mmas")) {
+			return new MMASSolution(p, generator, workers);
+		} else if (name.equals("lk")) {
+			return new LKSolution(p, generator, workers);
+		} else if (name.equals("exact")) {
+			return new ExactTSPSolution(p, generator, workers);
+		} else if (name.startsWith("orienteering")) {
+			var orienteering = new OrienteeringSolution(p, generator, workers);
+			orienteering.setWeighted(name.equals("orienteering-weighted"));
+			return orienteering;
+		}
+		return new TSPSolution(p, generator, workers);
+    }
+    
+    /**
+     * Sets the bounds, step size, lattice and no-fly-zones of the pather, once before any searches run as the setters must not be called during one
+     * 
+     * @param p The pather
+     * @param client The client to get the no-fly-zones from
+     * @param lattice The size of the lattice positions are snapped to, 0 to keep them continuous
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private static void configurePather(Pather p, ClientWrapper client, double lattice) throws IOException, InterruptedException {
+    	p.setBounds(UPPERBOUND, LOWERBOUND, LEFTBOUND, RIGHTBOUND);
+    	p.setStepSize(STEPSIZE);
+    	p.setLatticeResolution(lattice);
+    	p.setNoFlyZones(client.getNoFly());
+    }
+    
+    /**
+     * 
+     * @param args The arguments
+     * @param index The index of the optional lattice argument
+     * @return The lattice size passed in, or 0 if it was left out
+     */
+    private static double lattice(String[] args, int index) {
+    	return args.length > index ? Double.parseDouble(args[index]) : 0.0;
+    }
+    
+    /**
+     * Creates the pather used for all path finding, an A* search wrapped in a cache so the path costs between sensors are kept between runs
+     * and in front of that the precomputed path table (if one has been built)
+     * 
+     * @return The pather
+     */
+    private static TablePather createPather() {
+    	var dir = System.getProperty("user.dir");
+    	return new TablePather(new CachingPather(new AStarPather(), Paths.get(dir, "path-cost-cache.bin")), Paths.get(dir, "path-table.bin"));
+    }
+    
+    /**
+     * Creates the client used for all server communication, with the What3Words locations and no-fly-zones it downloads kept between runs<br>
+     * Anything other than a port number is taken as the path of a copy of the server's tree, as a directory or zip, which is read directly instead
+     * 
+     * @param port The port of the server, or the path of a copy of its tree
+     * @return The client, which must be closed once it's no longer needed
+     * @throws IOException If the copy of the tree can't be opened
+     */
+    private static ClientWrapper createClient(String port) throws IOException {
+    	if (!port.matches("\\d+")) {
+    		return new LocalClient(Paths.get(port));
+    	}
+    	var dir = System.getProperty("user.dir");
+    	return new Client(Integer.parseInt(port), new WordsCache(Paths.get(dir, "words-cache.bin")), new NoFlyCache(Paths.get(dir, "no-fly-cache.bin")));
+    }
+    
+    /**
+     * Flies every day from the first to the last date, sharing one client and pather between them so the no-fly-zones, What3Words locations
+     * and path costs are only fetched or found once, with the days planned and flown at once on a pool of workers<br>
+     * Each day uses its own generator seeded with the passed in seed, so it produces the same outputs it would if flown on its own. Days without
+     * air quality data are skipped.
+     * 
+     * @param args The arguments, "batch" followed by the first and last dates (as dd-mm-yyyy), the latitude and longitude of the start, the seed, the port and optionally the solver and lattice
+     */
+    private static void batch(String[] args) {
+    	Sensor start = new SensorNode("", Double.parseDouble(args[BATCHLONGINDX]), Double.parseDouble(args[BATCHLATTINDX]), 0.0, "");
+    	var solverName = args.length > BATCHSOLVERINDX ? args[BATCHSOLVERINDX] : "";
+    	var seed = Integer.parseInt(args[BATCHSEEDINDX]);
+    	var workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    	//one pool for every day's solver, the days share the processors rather than each starting a pool of their own
+    	var solverWorkers = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    	try (var pather = createPather(); ClientWrapper client = createClient(args[BATCHPORTINDX])) {
+    		//fetch the no-fly-zones up front so every day gets the same zones and the pather only builds its geometry once
+    		configurePather(pather, client, lattice(args, BATCHLATTICEINDX));
+    		var days = new ArrayList<Callable<Void>>();
+    		var last = LocalDate.parse(args[BATCHLASTINDX], BATCHDATE);
+    		for (var date = LocalDate.parse(args[BATCHFIRSTINDX], BATCHDATE); !date.isAfter(last); date = date.plusDays(1)) {
+    			var day = String.format("%02d", date.getDayOfMonth());
+    			var month = String.format("%02d", date.getMonthValue());
+    			var year = Integer.toString(date.getYear());
+    			days.add(() -> {
+    				try {
+    					flyDay(client, pather, solverWorkers, solverName, seed, start, day, month, year);
+    					System.out.println(String.format("Flew %s-%s-%s", day, month, year));
+    				} catch (JsonParseException e) {
+    					System.out.println(String.format("No air quality data for %s-%s-%s, skipping it", day, month, year));
+    				} catch (IOException e) {
+    					System.out.println(String.format("Failed to fly %s-%s-%s", day, month, year));
+    					e.printStackTrace();
+    				}
+    				return null;
+    			});
+    		}
+    		workers.invokeAll(days);
+    	} catch (IOException | InterruptedException e) {
+			e.printStackTrace();
+		} finally {
+			workers.shutdown();
+			solverWorkers.shutdown();
+		}
+    }
+    
+    /**
+     * Finds every sensor location used on any day in the passed in years and builds the path table between all of them
+     * 
+     * @param args The arguments, "warm" followed by the first year, the last year, the port and optionally the lattice
+     */
+    private static void warm(String[] args) {
+    	try (var pather = createPather(); ClientWrapper client = createClient(args[WARMPORTINDX])) {
+    		configurePather(pather, client, lattice(args, WARMLATTICEINDX));
+    		//collect the distinct sensors across every day, keyed by their What3Words location
+    		var sites = new LinkedHashMap<String, Sensor>();
+    		var last = LocalDate.of(Integer.parseInt(args[WARMLASTYEARINDX]), 12, 31);
+    		for (var date = LocalDate.of(Integer.parseInt(args[WARMFIRSTYEARINDX]), 1, 1); !date.isAfter(last); date = date.plusDays(1)) {
+    			try {
+    				for (var s: client.getDestinations(String.format("%02d", date.getDayOfMonth()), String.format("%02d", date.getMonthValue()), Integer.toString(date.getYear()))) {
+    					sites.putIfAbsent(s.getWhat3Words(), s);
+    				}
+    			} catch (JsonParseException e) {
+    				//there is no air quality data for this date
+    				continue;
+    			}
+    		}
+    		System.out.println(String.format("Found %d distinct sensor locations", sites.size()));
+    		pather.warm(new ArrayList<Sensor>(sites.values()), 0.0002);
+    	} catch (IOException | InterruptedException e) {
+			e.printStackTrace();
 		}
     }
 }
@@ -0,0 +1,222 @@
+package uk.ac.ed.inf.aqmaps;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *
+ * Pather that wraps another Pather and remembers the length of every path it's asked for in a binary file, so the lengths
+ * between sensors that appear on many days are only ever searched for once.<br>
+ * Each length is keyed by the start, end, tolerance, step size, lattice size and a hash of the no-fly-zones and bounds, so changing the
+ * flying area or search mode never returns a stale length. Full paths are not cached and are always passed on to the wrapped Pather.
+ *
+ * @author Yannik Nelson
+ * @see ForwardingPather
+ */
+class CachingPather extends ForwardingPather {
+
+	//marks the start of a cache file and the version of its layout
+	private static final int MAGIC = 0x41515043;
+	private static final int VERSION = 2;
+	//sizes in bytes of the file header and of each entry
+	private static final int HEADER = 8;
+	private static final int ENTRY = 68;
+
+	private final Path cacheFile;
+	private final ConcurrentHashMap<PathKey, Integer> lengths = new ConcurrentHashMap<>();
+	private DataOutputStream out;
+	//set once the cache is closed, lengths found after that are still remembered for the run but not saved
+	private boolean closed = false;
+
+	/**
+	 * Loads any lengths already saved in the cache file, new lengths are appended to the end of the file as they're found
+	 *
+	 * @param p The Pather that will do the searching
+	 * @param cacheFile The file the lengths are saved in, it's created if it doesn't exist
+	 */
+	CachingPather(Pather p, Path cacheFile) {
+		super(p);
+		this.cacheFile = cacheFile;
+		load();
+	}
+
+	/**
+	 * Returns the saved length if this path has been searched for before with the same configuration, otherwise searches for it and saves the length
+	 */
+	@Override
+	public Integer pathLength(Location start, Location end, double tolerance) {
+		var key = new PathKey(start, end, tolerance, getStepSize(), getLatticeResolution(), getGeometryHash());
+		var length = lengths.get(key);
+		if (length == null) {
+			length = pather.pathLength(start, end, tolerance);
+			if (lengths.putIfAbsent(key, length) == null) {
+				append(key, length);
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Closes the cache file and then the wrapped Pather
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			closed = true;
+			if (out != null) {
+				out.close();
+				out = null;
+			}
+		}
+		super.close();
+	}
+
+	/**
+	 * Reads every entry from the cache file into memory, starting a new file if it's missing or isn't a cache file.<br>
+	 * A partly written entry at the end of the file (from a run that was stopped mid write) is cut off so new entries line up.
+	 */
+	private void load() {
+		long entries = 0;
+		var valid = false;
+		if (Files.exists(cacheFile)) {
+			try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+				if (in.readInt() == MAGIC && in.readInt() == VERSION) {
+					valid = true;
+					while (true) {
+						var key = new PathKey(in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(), in.readLong());
+						lengths.put(key, in.readInt());
+						entries++;
+					}
+				}
+				System.out.println("Path cost cache is not in the expected format, starting a new one");
+			} catch (EOFException e) {
+				if (valid) {
+					truncate(HEADER + entries * ENTRY);
+					System.out.println(String.format("Loaded %d cached path costs", lengths.size()));
+					return;
+				}
+			} catch (IOException e) {
+				System.out.println("Failed to read the path cost cache, starting a new one");
+			}
+		}
+		lengths.clear();
+		try {
+			//write a fresh header, replacing whatever was in the file
+			out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(cacheFile)));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.flush();
+		} catch (IOException e) {
+			System.out.println("Failed to create the path cost cache, costs will not be saved");
+		}
+	}
+
+	/**
+	 * Cuts the cache file down to the passed in size, dropping any partly written entry
+	 * 
+	 * @param size The size of the file in bytes
+	 */
+	private void truncate(long size) {
+		try (var channel = FileChannel.open(cacheFile, StandardOpenOption.WRITE)) {
+			if (channel.size() > size) {
+				channel.truncate(size);
+			}
+		} catch (IOException e) {
+			System.out.println("Failed to tidy the path cost cache");
+		}
+	}
+
+	/**
+	 * Appends an entry to the end of the cache file, flushing it straight away so it's kept even if the run doesn't finish
+	 *
+	 * @param key The key of the path
+	 * @param length The length of the path
+	 */
+	private synchronized void append(PathKey key, Integer length) {
+		if (closed) {
+			return;
+		}
+		try {
+			if (out == null) {
+				out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(cacheFile, StandardOpenOption.APPEND)));
+			}
+			out.writeDouble(key.fromLongitude);
+			out.writeDouble(key.fromLatitude);
+			out.writeDouble(key.toLongitude);
+			out.writeDouble(key.toLatitude);
+			out.writeDouble(key.tolerance);
+			out.writeDouble(key.stepSize);
+			out.writeDouble(key.lattice);
+			out.writeLong(key.geometry);
+			out.writeInt(length);
+			out.flush();
+		} catch (IOException e) {
+			System.out.println("Failed to save a path cost to the cache");
+		}
+	}
+
+	/**
+	 * Key identifying a path length, two keys are equal only if all of their values are exactly the same
+	 */
+	private static final class PathKey {
+		final double fromLongitude;
+		final double fromLatitude;
+		final double toLongitude;
+		final double toLatitude;
+		final double tolerance;
+		final double stepSize;
+		final double lattice;
+		final long geometry;
+
+		PathKey(Location from, Location to, double tolerance, double stepSize, double lattice, long geometry) {
+			this(from.longitude(), from.latitude(), to.longitude(), to.latitude(), tolerance, stepSize, lattice, geometry);
+		}
+
+		PathKey(double fromLongitude, double fromLatitude, double toLongitude, double toLatitude, double tolerance, double stepSize, double lattice, long geometry) {
+			this.fromLongitude = fromLongitude;
+			this.fromLatitude = fromLatitude;
+			this.toLongitude = toLongitude;
+			this.toLatitude = toLatitude;
+			this.tolerance = tolerance;
+			this.stepSize = stepSize;
+			this.lattice = lattice;
+			this.geometry = geometry;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof PathKey)) {
+				return false;
+			}
+			var k = (PathKey) o;
+			return Double.compare(fromLongitude, k.fromLongitude) == 0 && Double.compare(fromLatitude, k.fromLatitude) == 0
+					&& Double.compare(toLongitude, k.toLongitude) == 0 && Double.compare(toLatitude, k.toLatitude) == 0
+					&& Double.compare(tolerance, k.tolerance) == 0 && Double.compare(stepSize, k.stepSize) == 0
+					&& Double.compare(lattice, k.lattice) == 0 && geometry == k.geometry;
+		}
+
+		@Override
+		public int hashCode() {
+			long h = 17;
+			h = mix(h, Double.doubleToLongBits(fromLongitude));
+			h = mix(h, Double.doubleToLongBits(fromLatitude));
+			h = mix(h, Double.doubleToLongBits(toLongitude));
+			h = mix(h, Double.doubleToLongBits(toLatitude));
+			h = mix(h, Double.doubleToLongBits(tolerance));
+			h = mix(h, Double.doubleToLongBits(stepSize));
+			h = mix(h, Double.doubleToLongBits(lattice));
+			h = mix(h, geometry);
+			return (int) (h ^ (h >>> 32));
+		}
+	}
+
+}
@@ -1,25 +1,18 @@
 package uk.ac.ed.inf.aqmaps;
 
 import java.io.IOException;
-import java.lang.reflect.Type;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
 import java.util.ArrayList;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonParser;
-import com.google.gson.reflect.TypeToken;
-import com.mapbox.geojson.Feature;
-import com.mapbox.geojson.FeatureCollection;
-import com.mapbox.geojson.Point;
-import com.mapbox.geojson.Polygon;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 
 /**
  * The Client class handles all communication with the webserver that holds the required data such as:<br>
@@ -43,87 +36,117 @@ class Client implements ClientWrapper{
 	private HttpClient client = HttpClient.newHttpClient();
 	
 	private String baseURL;
-	private JsonParser parser = new JsonParser();
-	//Create a custom Gson in order to parse the sensor data in a usefull way
-	private static GsonBuilder gsonBuilder = new GsonBuilder();
-	private static Gson SensorGson;
-	//Custom deserializer for the Sensor Json that makes converting the Json to Sensor Objects easier
-	private JsonDeserializer<Sensor> deserializer = new JsonDeserializer<Sensor>() {
-		@Override
-		public SensorNode deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-	        var jsonObject = json.getAsJsonObject();
-	        Location location;
-	        //convert the what3words string into a Point and pass that and the json attributes into the Sensor Constructor
-			try {
-				location = LocationFromWords(jsonObject.get("location").getAsString());
-				return new SensorNode(jsonObject.get("location").getAsString(), location.longitude(), location.latitude(), jsonObject.get("battery").getAsDouble(), jsonObject.get("reading").getAsString());
-			} catch (IOException e) {
-				//Catch exception and print the message for quick clarity and then stack trace
-				System.out.println("IOException");
-				System.out.println(e.getMessage());
-				System.out.println();
-				e.printStackTrace();
-				return null;
-			} catch (InterruptedException e) {
-				//Catch exception and print the message for quick clarity and then stack trace
-				System.out.println("InterruptedException");
-				System.out.println(e.getMessage());
-				System.out.println();
-				e.printStackTrace();
-				return null;
-			}
-	    }
-	};
-	private static Type listType = new TypeToken<ArrayList<SensorNode>>() {}.getType();
+	//the most What3Words requests that are sent to the server at once
+	private static final int MAXREQUESTS = 8;
+	//the status the server replies with when it has the details of a What3Words location
+	private static final int HTTP_OK = 200;
+	//the status the server replies with when the no-fly-zones haven't changed
+	private static final int HTTP_NOT_MODIFIED = 304;
+	//the coordinates of every What3Words location resolved so far
+	private WordsCache words;
+	//the last no-fly-zones downloaded and the validators sent with them
+	private NoFlyCache noFly;
 	
 	/**
-	 * The Client must be initialised with the port it will use to communicate with the server
+	 * The Client must be initialised with the port it will use to communicate with the server, the What3Words locations and no-fly-zones it downloads are only cached in memory
 	 * 
 	 * @param port The port the client will use to communicate to the server
 	 */
 	Client(Integer port) {
+		this(port, new WordsCache(), new NoFlyCache());
+	}
+	
+	/**
+	 * 
+	 * @param port The port the client will use to communicate to the server
+	 * @param words The cache of What3Words locations to check before sending a request, and to save resolved locations in
+	 * @param noFly The cache of no-fly-zones to revalidate with the server instead of downloading them again
+	 */
+	Client(Integer port, WordsCache words, NoFlyCache noFly) {
 		baseURL = "http://localhost:" + Integer.toString(port) + "/";
-		gsonBuilder.registerTypeAdapter(SensorNode.class, deserializer);
-		SensorGson = gsonBuilder.create();
+		this.words = words;
+		this.noFly = noFly;
 	}
 	
 	/**
+	 * Gets the no-fly-zones, asking the server to only send the GeoJson if it has changed since the cached zones were downloaded<br>
+	 * If the server says the GeoJson hasn't changed, or sends the same GeoJson again, the cached zones are returned without parsing anything,
+	 * and as the same list every time so Pathers can tell they already have them.
 	 * 
-	 * @return The GeoJson describing the no-fly zones from the server
+	 * @return The no-fly zones from the server
 	 * @throws IOException
 	 * @throws InterruptedException
 	 */
 	public ArrayList<ArrayList<Location>> getNoFly() throws IOException, InterruptedException {
-		ArrayList<ArrayList<Location>> noFlyZones = new ArrayList<>();
-		//sends a request for the no-fly-zones GeoJson and returns the body of the response
-		var request = HttpRequest.newBuilder().uri(URI.create(baseURL + "buildings/no-fly-zones.geojson")).build();
-		var noFlyGeoJson = client.send(request, BodyHandlers.ofString()).body();
-		for (var f: FeatureCollection.fromJson(noFlyGeoJson).features()) {
-			ArrayList<Point> t = (ArrayList<Point>) ((Polygon) f.geometry()).outer().coordinates();
-			var z = new ArrayList<Location>();
-			for (var p: t) {
-				z.add(new Node(p.longitude(), p.latitude()));
+		var cached = noFly.getZones();
+		var builder = HttpRequest.newBuilder().uri(URI.create(baseURL + "buildings/no-fly-zones.geojson"));
+		if (cached != null) {
+			if (!noFly.getETag().isEmpty()) {
+				builder.header("If-None-Match", noFly.getETag());
+			}
+			if (!noFly.getLastModified().isEmpty()) {
+				builder.header("If-Modified-Since", noFly.getLastModified());
 			}
-			noFlyZones.add(z);
 		}
+		//sends a request for the no-fly-zones GeoJson and returns the body of the response
+		var response = client.send(builder.build(), BodyHandlers.ofString());
+		if (cached != null && response.statusCode() == HTTP_NOT_MODIFIED) {
+			return cached;
+		}
+		var noFlyGeoJson = response.body();
+		var hash = NoFlyCache.hashOf(noFlyGeoJson);
+		if (cached != null && hash == noFly.getHash()) {
+			return cached;
+		}
+		var noFlyZones = ServerJson.noFlyZones(noFlyGeoJson);
+		var headers = response.headers();
+		noFly.update(headers.firstValue("ETag").orElse(""), headers.firstValue("Last-Modified").orElse(""), hash, noFlyZones);
 		return noFlyZones;
 	}
 	
 	/**
-	 * Takes in date parameters and returns the air quality data JSON from said date
+	 * Takes in date parameters and returns the sensors to be read on that date<br>
+	 * The air quality data JSON is decoded as it streams in from the server, and each sensor's What3Words location starts resolving as soon as its entry is read, 
+	 * with at most MAXREQUESTS requests in flight at once, so the day loads in roughly the time of a single request
 	 * 
 	 * @param day The day of the desired date
 	 * @param month The month of the desired date
 	 * @param year The year of the desired date
-	 * @return The JSON containing the data about the sensors to be read on the specified date
+	 * @return The sensors to be read on the specified date, in the order they appear in the JSON
 	 * @throws IOException
 	 * @throws InterruptedException
 	 */
 	public ArrayList<Sensor> getDestinations(String day,String month, String year) throws IOException, InterruptedException {
-		//sends a request for the air-quality-data on the specified day and returns the body of the response
+		//sends a request for the air-quality-data on the specified day and reads the body of the response as it arrives
 		var request = HttpRequest.newBuilder().uri(URI.create(baseURL +"/maps/"+ year + "/" + month + "/" + day + "/air-quality-data.json")).build();
-		var json = client.send(request, BodyHandlers.ofString()).body();
-		return SensorGson.fromJson(json, listType);
+		//the attributes of each sensor in the order they appear in the JSON
+		var what3words = new ArrayList<String>();
+		var batteries = new ArrayList<Double>();
+		var readings = new ArrayList<String>();
+		//sensors sharing a location only need it resolving once, and locations already in the cache aren't requested at all
+		var locations = new HashMap<String, CompletableFuture<Location>>();
+		//wait for a permit before each request so only MAXREQUESTS are ever in flight
+		var permits = new Semaphore(MAXREQUESTS);
+		ServerJson.airQuality(client.send(request, BodyHandlers.ofInputStream()).body(), day + "/" + month + "/" + year, (words, battery, reading) -> {
+			what3words.add(words);
+			batteries.add(battery);
+			readings.add(reading);
+			if (!locations.containsKey(words)) {
+				locations.put(words, resolve(words, permits));
+			}
+		});
+		//join the locations with the rest of each sensor's attributes
+		var sensors = new ArrayList<Sensor>();
+		try {
+			for (int i = 0; i < what3words.size(); i++) {
+				var location = locations.get(what3words.get(i)).get();
+				sensors.add(new SensorNode(what3words.get(i), location.longitude(), location.latitude(), batteries.get(i), readings.get(i)));
+			}
+		} catch (ExecutionException e) {
+			var cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+			throw new IOException("Failed to resolve a What3Words location", cause);
+		}
+		return sensors;
 	}
 	
 	/**
@@ -135,19 +158,82 @@ class Client implements ClientWrapper{
 	 * @throws InterruptedException
 	 */
 	public Location LocationFromWords(String what3words) throws IOException, InterruptedException {
+		var location = words.get(what3words);
+		if (location == null) {
+			location = coordinates(what3words, client.send(wordsRequest(what3words), BodyHandlers.ofInputStream()));
+			words.put(what3words, location);
+		}
+		return location;
+	}
+	
+	/**
+	 * 
+	 * Starts resolving a What3Words location, from the cache if it's there or with a request to the server once a permit is free
+	 * 
+	 * @param what3words A What3Words String
+	 * @param permits The permits for requests in flight
+	 * @return The location once it's resolved
+	 * @throws InterruptedException
+	 */
+	private CompletableFuture<Location> resolve(String what3words, Semaphore permits) throws InterruptedException {
+		var cached = words.get(what3words);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+		permits.acquire();
+		//a request that can't be built or sent never completes the future, so its permit has to be released here
+		CompletableFuture<HttpResponse<InputStream>> sent;
+		try {
+			sent = client.sendAsync(wordsRequest(what3words), BodyHandlers.ofInputStream());
+		} catch (RuntimeException e) {
+			permits.release();
+			return CompletableFuture.failedFuture(new IOException("Failed to request the What3Words location " + what3words, e));
+		}
+		return sent
+				.thenApply(response -> {
+					try {
+						return coordinates(what3words, response);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				})
+				.whenComplete((location, error) -> {
+					permits.release();
+					if (location != null) {
+						words.put(what3words, location);
+					}
+				});
+	}
+	
+	/**
+	 * Reads the coordinates out of the server's reply for a What3Words location, failing clearly if the server didn't have the details
+	 * 
+	 * @param what3words A What3Words String
+	 * @param response The server's reply to the request for the details of that location
+	 * @return The location
+	 * @throws IOException
+	 */
+	private static Location coordinates(String what3words, HttpResponse<InputStream> response) throws IOException {
+		try (var body = response.body()) {
+			if (response.statusCode() != HTTP_OK) {
+				throw new IOException(String.format("Server returned status %d for the What3Words location %s", response.statusCode(), what3words));
+			}
+			return ServerJson.coordinates(body);
+		}
+	}
+	
+	/**
+	 * 
+	 * @param what3words A What3Words String
+	 * @return The request for the details of that What3Words location
+	 */
+	private HttpRequest wordsRequest(String what3words) {
 		//split the What3Words into its three components
 		String words[] = what3words.split("\\.",3);
-		//use the components to build the path to the details for that What3Words location on the server and send a request for it.
-		var request = HttpRequest.newBuilder().uri(URI.create(baseURL +"/words/"+ words[0] + "/" + words[1] + "/" + words[2] + "/details.json")).build();
-		//get the JSON in the body of the response and use it to build a JsonObject, then getting it's coordinates attribute also as a JsonObject
-		var JSON = client.send(request, BodyHandlers.ofString()).body();
-		var coords = parser.parse(JSON).getAsJsonObject().getAsJsonObject("coordinates");
-		//get the lat and lng attributes of the coords JsonObject as Doubles and use them to construct the Point that is returned
-		Double lat = coords.get("lat").getAsDouble();
-		Double lng = coords.get("lng").getAsDouble();
-		return new Node(lng, lat);
+		//use the components to build the path to the details for that What3Words location on the server
+		return HttpRequest.newBuilder().uri(URI.create(baseURL +"/words/"+ words[0] + "/" + words[1] + "/" + words[2] + "/details.json")).build();
 	}
-
+	
 	/**
 	 * Stand in for getting data from sensors
 	 * 
@@ -1,5 +1,6 @@
 package uk.ac.ed.inf.aqmaps;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
 
@@ -10,7 +11,15 @@ import java.util.ArrayList;
  * @author Yannik Nelson
  *
  */
-interface ClientWrapper {
+interface ClientWrapper extends Closeable {
+	
+	/**
+	 * Releases anything the client holds open, clients that hold nothing open don't need to override it
+	 * 
+	 * @throws IOException
+	 */
+	@Override
+	default void close() throws IOException {}
 	
 	/**
 	 * 
@@ -2,7 +2,6 @@ package uk.ac.ed.inf.aqmaps;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import org.javatuples.Pair;
 
 import me.tongfei.progressbar.ProgressBar;
 import me.tongfei.progressbar.ProgressBarBuilder;
@@ -16,9 +15,6 @@ import me.tongfei.progressbar.ProgressBarStyle;
  */
 public class DevelopmentDrone implements Drone{
 	
-	//Constant that defines the step size of the drone
-	private final Double STEPSIZE;
-	
 	//the client that will be used to get all of the needed info
 	private ClientWrapper client;
 	//Planning objects
@@ -27,24 +23,50 @@ public class DevelopmentDrone implements Drone{
 	//Logging and visualising objects
 	private Logger logger;
 	private Visualiser vis;
+	//every sensor planned for, which the solver may not have put in the order if they couldn't all be visited
+	private ArrayList<Sensor> planned;
+	//whether the drone sets up the pather itself, it doesn't when given one that's already set up and possibly shared with other drones
+	private final boolean configuresPather;
 	
-	public DevelopmentDrone(Pather p, TSPSolver t, Logger l, Visualiser v, ClientWrapper c, Location start, Double ub, Double lob, Double leb, Double rb, Double ss) {
-		this.STEPSIZE = ss;
+	public DevelopmentDrone(Pather p, TSPSolver t, Logger l, Visualiser v, ClientWrapper c, Location start, double ub, double lob, double leb, double rb, double ss) {
 		this.pather = p;
 		this.pather.setBounds(ub, lob, leb, rb);
-		this.pather.setStepSize(this.STEPSIZE);
+		this.pather.setStepSize(ss);
 		this.tsp = t;
 		this.logger = l;
 		this.vis = v;
 		this.client = c;
+		this.configuresPather = true;
+	}
+	
+	/**
+	 * Creates a drone that flies with a pather whose bounds, step size and no-fly-zones have already been set, so it can be shared with
+	 * drones flying at the same time without any of them calling its setters mid search
+	 * 
+	 * @param p The configured pather
+	 * @param t The solver
+	 * @param l The logger
+	 * @param v The visualiser
+	 * @param c The client
+	 */
+	public DevelopmentDrone(Pather p, TSPSolver t, Logger l, Visualiser v, ClientWrapper c) {
+		this.pather = p;
+		this.tsp = t;
+		this.logger = l;
+		this.vis = v;
+		this.client = c;
+		this.configuresPather = false;
 	}
 	
 	public ArrayList<Sensor> Plan(Sensor start, String day, String month, String year) throws IOException, InterruptedException {
 		//get the no fly zones and bonding boxes from the client
-		this.pather.setNoFlyZones(client.getNoFly());
+		if (configuresPather) {
+			this.pather.setNoFlyZones(client.getNoFly());
+		}
 		//get the 
 		var destinations = client.getDestinations(day, month, year);
 		destinations.add(0, start);
+		planned = destinations;
 		return tsp.solve(destinations, start);
 	}
 	
@@ -55,34 +77,33 @@ public class DevelopmentDrone implements Drone{
 	 * @param start The start position
 	 */
 	public void Fly(ArrayList<Sensor> destinations, Sensor start) {
-		var path = new ArrayList<Pair<Location, Integer>>();
+		var path = new FlightPath();
 		//initialise lists to keep track of sensors we have visited and haven't visited as well as set up to first point in the path
 		var visitedSensors = new ArrayList<Sensor>();
-		var SensorsNotVisited = (ArrayList<Sensor>) destinations.clone();
+		var SensorsNotVisited = (ArrayList<Sensor>) (planned != null ? planned : destinations).clone();
 		SensorsNotVisited.remove(start);
-		path.add(new Pair<Location, Integer>(destinations.get(0),0));
+		path.add(destinations.get(0),0);
 		//the limit variable indicates whether the step limit has been reached
 		Integer limit = -1;
 		//ProgressBarBuilder pbb = new ProgressBarBuilder().setStyle(ProgressBarStyle.ASCII).setUpdateIntervalMillis(1).setInitialMax(destinations.size()+1).setTaskName("Flying");
 		//try (var pb = pbb.build()){
 			for (Integer i = 1; i < destinations.size(); i++) {
 				//for every sensor, move from the last point in the path and try to get within range of the sensor
-				var route = pather.path(path.get(path.size()-1).getValue0(), destinations.get(i), 0.0002);
+				var route = pather.path(path.last(), destinations.get(i), 0.0002);
 				//log the steps
 				limit = logger.LogSteps(route, destinations.get(i));
-				//if the logger returned a maximum index then drop all elements past that index from the route
+				//if the logger returned the index of the last step it could log then drop all elements past that index from the route
 				if (limit > -1) {
-					route = (ArrayList<Pair<Location, Integer>>) route.subList(0, limit);
+					route.truncate(limit + 1);
 				}
 				//if the last location in the route is within range of the desired sensor add it to the visited sensors list and remove it 
 				//from the no visited list
-				if (pather.findDistance(route.get(route.size()-1).getValue0(), destinations.get(i)) < 0.0002) {
+				if (pather.findDistance(route.last(), destinations.get(i)) < 0.0002) {
 					visitedSensors.add(client.getSensorData(destinations.get(i)));
 					SensorsNotVisited.remove(destinations.get(i));
 				}
-				//remove the first point to disallow repeated points in the path and add the remaining locations to the path
-				route.remove(0);
-				path.addAll(route);
+				//skip the first point to disallow repeated points in the path and add the remaining locations to the path
+				path.append(route, 1);
 				//if we'd reached the step limit stop flying
 				if (limit > -1) {
 					break;
@@ -91,24 +112,19 @@ public class DevelopmentDrone implements Drone{
 			}
 			//if we've not reached the step limit the attempt to return to the starting position in the same manner as before simply with a higher tollerance
 			if (limit == -1) {
-				var route = pather.path(path.get(path.size()-1).getValue0(),destinations.get(0),0.0003);
+				var route = pather.path(path.last(),destinations.get(0),0.0003);
 				limit = logger.LogSteps(route, destinations.get(0));
 				if (limit > -1) {
-					route = (ArrayList<Pair<Location, Integer>>) route.subList(0, limit);
+					route.truncate(limit + 1);
 				}
-				route.remove(0);
-				path.addAll(route);
+				path.append(route, 1);
 			}
 			//pb.step();
 		//}
 		//add all the visited sensors, unvisited sensors and the flight path to the visualisation
 		vis.AddVisitedSensors(visitedSensors);
 		vis.AddNotVisitedSensors(SensorsNotVisited);
-		var t = new ArrayList<Location>();
-		for (var p: path) {
-			t.add(p.getValue0());
-		}
-		vis.AddFlightPath(t);
+		vis.AddFlightPath(path);
 	}
 
 	public void ProduceOutput(String day, String month, String year) {
@@ -0,0 +1,470 @@
+package uk.ac.ed.inf.aqmaps;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ *
+ * Exact variant of TSPSolution that tries to find the cheapest possible tour of the connection matrix, used to measure how far the heuristic tours are from optimal.<br>
+ * Small sets of sensors are solved directly with the Held-Karp dynamic programme. Larger sets are searched with a branch and bound over the assignment
+ * problem relaxation, branching to break up the subtours of its solution, which starts from the Ant Colony Optimisation and 2-Opt tour as its best tour.
+ * If the time budget runs out before the search finishes, the best tour found so far is used. This is never worse than the heuristic tour.
+ *
+ * @author Yannik Nelson
+ * @see TSPSolution
+ */
+class ExactTSPSolution extends TSPSolution {
+
+	//the most sensors that are solved with Held-Karp, its tables grow with n*2^n
+	private static final int HELDKARP = 16;
+	//cost used for connections that can't be taken in the assignment problem, small enough that sums of it don't overflow
+	private static final int INF = 1_000_000;
+	//the longest the branch and bound will run for in milliseconds
+	private Long budget = 5000L;
+
+	//the state of the branch and bound search
+	private int[] best;
+	private int bestCost;
+	private long deadline;
+	private boolean timedOut;
+
+	/**
+	 * Creates a solution that uses all of the available processors
+	 *
+	 * @param p The Pather used to find the paths between the sensors
+	 * @param g The random number generator used by the Ant Colony Optimisation the search starts from
+	 */
+	ExactTSPSolution(Pather p, Random g) {
+		super(p, g);
+	}
+
+	/**
+	 *
+	 * @param p The Pather used to find the paths between the sensors, it must allow concurrent searches
+	 * @param g The random number generator used by the Ant Colony Optimisation the search starts from
+	 * @param threads The number of threads to use
+	 */
+	ExactTSPSolution(Pather p, Random g, Integer threads) {
+		super(p, g, threads);
+	}
+
+	/**
+	 *
+	 * @param p The Pather used to find the paths between the sensors, it must allow concurrent searches
+	 * @param g The random number generator used by the Ant Colony Optimisation the search starts from
+	 * @param workers The pool to run on, shared with other solutions
+	 */
+	ExactTSPSolution(Pather p, Random g, ForkJoinPool workers) {
+		super(p, g, workers);
+	}
+
+	/**
+	 *
+	 * @param budget The longest the branch and bound will run for in milliseconds
+	 */
+	void setBudget(Long budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Finds the optimal tour, or the best found within the time budget
+	 *
+	 * @return The tour as indices into the connection matrix
+	 */
+	@Override
+	protected int[] ACOTSP() {
+		if (n <= HELDKARP) {
+			var tour = heldKarp(connectionMatrix, n);
+			System.out.println(String.format("Optimal Tour Step Cost: %d", getCost(tour)));
+			return tour;
+		}
+		var heuristic = super.ACOTSP();
+		Two_OPT(heuristic);
+		int heuristicCost = getCost(heuristic);
+		best = heuristic.clone();
+		bestCost = heuristicCost;
+		deadline = System.currentTimeMillis() + budget;
+		timedOut = false;
+		//a sensor can never be its own successor
+		var matrix = connectionMatrix.clone();
+		for (int i = 0; i < n; i++) {
+			matrix[i*n+i] = INF;
+		}
+		var successor = new int[n];
+		int root = hungarian(matrix, n, successor);
+		//the assignment bound is weak when the costs are close to symmetric, so also find the 1-tree bound which often proves the heuristic tour is optimal
+		int bound = Math.max(root, oneTreeBound(connectionMatrix, n));
+		if (bound < bestCost) {
+			branch(matrix, new boolean[n], successor, root);
+		}
+		if (timedOut) {
+			System.out.println(String.format("Branch and bound ran out of time, best tour step cost: %d (heuristic %d, lower bound %d)", bestCost, heuristicCost, bound));
+		} else {
+			System.out.println(String.format("Optimal Tour Step Cost: %d (heuristic %d)", bestCost, heuristicCost));
+		}
+		return best;
+	}
+
+	/**
+	 *
+	 * Held-Karp dynamic programme over every subset of the sensors, starting and ending at sensor 0
+	 *
+	 * @param costs The connection matrix, row major
+	 * @param n The number of sensors
+	 * @return The optimal tour as indices into the connection matrix
+	 */
+	static int[] heldKarp(int[] costs, int n) {
+		int subsets = 1 << n;
+		//cost[mask*n+j] is the cheapest way to start at 0, visit exactly the sensors in mask and finish at j
+		var cost = new int[subsets*n];
+		var parent = new int[subsets*n];
+		Arrays.fill(cost, INF);
+		cost[1*n+0] = 0;
+		for (int mask = 1; mask < subsets; mask += 2) {
+			for (int j = 0; j < n; j++) {
+				int c = cost[mask*n+j];
+				if (c >= INF) {
+					continue;
+				}
+				for (int k = 1; k < n; k++) {
+					if ((mask & (1 << k)) != 0) {
+						continue;
+					}
+					int next = (mask | (1 << k))*n+k;
+					int through = c + costs[j*n+k];
+					if (through < cost[next]) {
+						cost[next] = through;
+						parent[next] = j;
+					}
+				}
+			}
+		}
+		//close the tour back to 0 from the cheapest last sensor, then follow the parents back
+		int full = subsets-1;
+		int last = 1;
+		for (int j = 2; j < n; j++) {
+			if (cost[full*n+j] + costs[j*n] < cost[full*n+last] + costs[last*n]) {
+				last = j;
+			}
+		}
+		var tour = new int[n];
+		int mask = full;
+		for (int i = n-1; i > 0; i--) {
+			tour[i] = last;
+			int previous = parent[mask*n+last];
+			mask &= ~(1 << last);
+			last = previous;
+		}
+		tour[0] = 0;
+		return tour;
+	}
+
+	/**
+	 *
+	 * Solves the assignment problem with some connections forced and some forbidden. If the cheapest assignment is a single tour it's
+	 * a candidate for the best tour, otherwise it breaks into subtours and the shortest is broken up by branching on each of its connections in turn:
+	 * the i-th child forbids its i-th connection and forces the connections before it, so no two children share a tour and every tour is in one of them.
+	 * The children are searched cheapest bound first and any whose bound can't beat the best tour are skipped.
+	 *
+	 * @param matrix The connection matrix with the forced and forbidden connections of this branch applied
+	 * @param forced Which sensors already have their successor forced
+	 * @param successor The cheapest assignment of this branch
+	 * @param cost The cost of the assignment
+	 */
+	private void branch(int[] matrix, boolean[] forced, int[] successor, int cost) {
+		if (timedOut) {
+			return;
+		}
+		if (System.currentTimeMillis() > deadline) {
+			timedOut = true;
+			return;
+		}
+		var cycle = shortestCycle(successor, forced);
+		if (cycle == null) {
+			//the assignment is a single tour
+			bestCost = cost;
+			best = tour(successor);
+			return;
+		}
+		//solve every child first so they can be visited cheapest first
+		int children = 0;
+		var matrices = new int[cycle.length][];
+		var successors = new int[cycle.length][];
+		var costs = new int[cycle.length];
+		var order = new int[cycle.length];
+		var child = matrix.clone();
+		for (int i = 0; i < cycle.length; i++) {
+			int from = cycle[i];
+			if (forced[from]) {
+				continue;
+			}
+			var m = child.clone();
+			m[from*n+successor[from]] = INF;
+			var assignment = new int[n];
+			int c = hungarian(m, n, assignment);
+			if (c < bestCost) {
+				matrices[i] = m;
+				successors[i] = assignment;
+				costs[i] = c;
+				int at = children++;
+				while (at > 0 && costs[order[at-1]] > c) {
+					order[at] = order[at-1];
+					at--;
+				}
+				order[at] = i;
+			}
+			//the later children keep this connection
+			force(child, from, successor[from]);
+		}
+		for (int k = 0; k < children; k++) {
+			int i = order[k];
+			if (costs[i] >= bestCost) {
+				break;
+			}
+			//every connection before this one in the cycle is forced in the child
+			var childForced = forced.clone();
+			for (int j = 0; j < i; j++) {
+				childForced[cycle[j]] = true;
+			}
+			branch(matrices[i], childForced, successors[i], costs[i]);
+		}
+	}
+
+	/**
+	 *
+	 * Forbids every other connection out of the start and into the end so the only way between them is the passed in connection
+	 *
+	 * @param matrix The matrix to change
+	 * @param from The start sensor of the connection
+	 * @param to The end sensor of the connection
+	 */
+	private void force(int[] matrix, int from, int to) {
+		for (int k = 0; k < n; k++) {
+			if (k != to) {
+				matrix[from*n+k] = INF;
+			}
+			if (k != from) {
+				matrix[k*n+to] = INF;
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param successor The sensor each sensor goes to next
+	 * @param forced Which sensors have their successor forced
+	 * @return The sensors of the cycle with the fewest unforced connections in order, or null if the successors form a single tour
+	 */
+	private int[] shortestCycle(int[] successor, boolean[] forced) {
+		var seen = new boolean[n];
+		int[] shortest = null;
+		int fewest = Integer.MAX_VALUE;
+		for (int s = 0; s < n; s++) {
+			if (seen[s]) {
+				continue;
+			}
+			int length = 0;
+			int free = 0;
+			for (int c = s; !seen[c]; c = successor[c]) {
+				seen[c] = true;
+				length++;
+				if (!forced[c]) {
+					free++;
+				}
+			}
+			if (length == n) {
+				return null;
+			}
+			if (free < fewest) {
+				fewest = free;
+				shortest = new int[length];
+				int c = s;
+				for (int i = 0; i < length; i++) {
+					shortest[i] = c;
+					c = successor[c];
+				}
+			}
+		}
+		return shortest;
+	}
+
+	/**
+	 *
+	 * @param successor The sensor each sensor goes to next, forming a single tour
+	 * @return The tour as indices into the connection matrix starting from sensor 0
+	 */
+	private int[] tour(int[] successor) {
+		var tour = new int[n];
+		for (int i = 1; i < n; i++) {
+			tour[i] = successor[tour[i-1]];
+		}
+		return tour;
+	}
+
+	/**
+	 *
+	 * Held-Karp lower bound on the symmetric relaxation of the costs, where each connection costs the cheaper of its two directions.<br>
+	 * Every tour costs at least its cheapest 1-tree (a spanning tree of the sensors other than 0 plus the two cheapest connections to 0), and adding a
+	 * penalty to every connection at each sensor changes the cost of every tour by the same amount, so the penalties are pushed towards the
+	 * sensors the tree uses too often or too little to raise the bound.
+	 *
+	 * @param costs The connection matrix, row major
+	 * @param n The number of sensors
+	 * @return The lower bound, rounded up as every tour has a whole number cost
+	 */
+	static int oneTreeBound(int[] costs, int n) {
+		var symmetric = new double[n*n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				symmetric[i*n+j] = Math.min(costs[i*n+j], costs[j*n+i]);
+			}
+		}
+		var penalty = new double[n];
+		var degree = new int[n];
+		double bound = 0;
+		double step = 1.0;
+		for (int iteration = 0; iteration < 1000 && step > 1e-4; iteration++) {
+			double tree = oneTree(symmetric, n, penalty, degree);
+			bound = Math.max(bound, tree);
+			int squares = 0;
+			for (int i = 0; i < n; i++) {
+				squares += (degree[i]-2)*(degree[i]-2);
+			}
+			if (squares == 0) {
+				//the tree is a tour so the bound can't be raised any further
+				break;
+			}
+			for (int i = 0; i < n; i++) {
+				penalty[i] += step*(degree[i]-2);
+			}
+			step *= 0.99;
+		}
+		return (int) Math.ceil(bound - 1e-9);
+	}
+
+	/**
+	 *
+	 * @param cost The symmetric costs, row major
+	 * @param n The number of sensors
+	 * @param penalty The penalty added to every connection at each sensor
+	 * @param degree Filled with the number of connections at each sensor in the tree
+	 * @return The cost of the cheapest 1-tree under the penalties, less twice the sum of the penalties
+	 */
+	private static double oneTree(double[] cost, int n, double[] penalty, int[] degree) {
+		Arrays.fill(degree, 0);
+		double total = 0;
+		//Prim's algorithm over the sensors other than 0
+		var inTree = new boolean[n];
+		var closest = new double[n];
+		var from = new int[n];
+		Arrays.fill(closest, Double.MAX_VALUE);
+		closest[1] = 0;
+		from[1] = -1;
+		for (int added = 1; added < n; added++) {
+			int next = -1;
+			for (int s = 1; s < n; s++) {
+				if (!inTree[s] && (next == -1 || closest[s] < closest[next])) {
+					next = s;
+				}
+			}
+			inTree[next] = true;
+			if (from[next] >= 0) {
+				total += closest[next];
+				degree[next]++;
+				degree[from[next]]++;
+			}
+			for (int s = 1; s < n; s++) {
+				double c = cost[next*n+s] + penalty[next] + penalty[s];
+				if (!inTree[s] && c < closest[s]) {
+					closest[s] = c;
+					from[s] = next;
+				}
+			}
+		}
+		//the two cheapest connections to 0
+		int first = -1;
+		int second = -1;
+		for (int s = 1; s < n; s++) {
+			double c = cost[s] + penalty[0] + penalty[s];
+			if (first == -1 || c < cost[first] + penalty[0] + penalty[first]) {
+				second = first;
+				first = s;
+			} else if (second == -1 || c < cost[second] + penalty[0] + penalty[second]) {
+				second = s;
+			}
+		}
+		total += cost[first] + cost[second] + 2*penalty[0] + penalty[first] + penalty[second];
+		degree[0] = 2;
+		degree[first]++;
+		degree[second]++;
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			sum += penalty[i];
+		}
+		return total - 2*sum;
+	}
+
+	/**
+	 *
+	 * Hungarian algorithm for the square assignment problem
+	 *
+	 * @param matrix The costs, row major
+	 * @param m The number of rows and columns
+	 * @param assignment Filled with the column assigned to each row
+	 * @return The cost of the cheapest assignment of rows to distinct columns
+	 */
+	static int hungarian(int[] matrix, int m, int[] assignment) {
+		//row and column potentials, the row matched to each column and the previous column on the augmenting path, all 1 indexed with 0 as a dummy
+		var u = new int[m+1];
+		var v = new int[m+1];
+		var match = new int[m+1];
+		var way = new int[m+1];
+		var min = new int[m+1];
+		var used = new boolean[m+1];
+		for (int i = 1; i <= m; i++) {
+			match[0] = i;
+			int j0 = 0;
+			Arrays.fill(min, Integer.MAX_VALUE);
+			Arrays.fill(used, false);
+			do {
+				used[j0] = true;
+				int i0 = match[j0];
+				int delta = Integer.MAX_VALUE;
+				int j1 = 0;
+				for (int j = 1; j <= m; j++) {
+					if (!used[j]) {
+						int reduced = matrix[(i0-1)*m+(j-1)] - u[i0] - v[j];
+						if (reduced < min[j]) {
+							min[j] = reduced;
+							way[j] = j0;
+						}
+						if (min[j] < delta) {
+							delta = min[j];
+							j1 = j;
+						}
+					}
+				}
+				for (int j = 0; j <= m; j++) {
+					if (used[j]) {
+						u[match[j]] += delta;
+						v[j] -= delta;
+					} else {
+						min[j] -= delta;
+					}
+				}
+				j0 = j1;
+			} while (match[j0] != 0);
+			//flip the augmenting path
+			do {
+				int j1 = way[j0];
+				match[j0] = match[j1];
+				j0 = j1;
+			} while (j0 != 0);
+		}
+		for (int j = 1; j <= m; j++) {
+			assignment[match[j]-1] = j-1;
+		}
+		return -v[0];
+	}
+}
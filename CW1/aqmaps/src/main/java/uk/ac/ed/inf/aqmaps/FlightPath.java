@@ -0,0 +1,196 @@
+package uk.ac.ed.inf.aqmaps;
+
+import java.util.Arrays;
+
+/**
+ *
+ * A path flown by the drone, held as parallel arrays of the longitude, latitude and heading of every position in it rather than as a list of
+ * objects, so adding a step, cutting a path short or joining paths together never allocates anything per step.<br>
+ * The heading of each position is the angle flown to reach it from the position before, the first position of a path has no position before it
+ * and its heading is whatever the path was started with (-1 for a path found by a search).
+ *
+ * @author Yannik Nelson
+ * @see Pather
+ */
+final class FlightPath {
+
+	private double[] longitudes;
+	private double[] latitudes;
+	private short[] headings;
+	private int size = 0;
+
+	/**
+	 * Creates an empty path
+	 */
+	FlightPath() {
+		this(16);
+	}
+
+	/**
+	 *
+	 * @param capacity The number of positions the path can hold before it has to grow
+	 */
+	FlightPath(int capacity) {
+		capacity = Math.max(capacity, 1);
+		this.longitudes = new double[capacity];
+		this.latitudes = new double[capacity];
+		this.headings = new short[capacity];
+	}
+
+	/**
+	 *
+	 * Adds a position to the end of the path
+	 *
+	 * @param longitude The longitude of the position
+	 * @param latitude The latitude of the position
+	 * @param heading The angle flown to reach the position
+	 */
+	void add(double longitude, double latitude, int heading) {
+		ensureCapacity(size + 1);
+		longitudes[size] = longitude;
+		latitudes[size] = latitude;
+		headings[size] = (short) heading;
+		size++;
+	}
+
+	/**
+	 *
+	 * Adds a position to the end of the path
+	 *
+	 * @param location The position
+	 * @param heading The angle flown to reach the position
+	 */
+	void add(Location location, int heading) {
+		add(location.longitude(), location.latitude(), heading);
+	}
+
+	/**
+	 *
+	 * Adds the positions of another path to the end of this one
+	 *
+	 * @param other The path to add
+	 * @param from The index of the first position of the other path to add, 1 skips the position the other path starts at
+	 */
+	void append(FlightPath other, int from) {
+		int count = other.size - from;
+		if (count <= 0) {
+			return;
+		}
+		ensureCapacity(size + count);
+		System.arraycopy(other.longitudes, from, longitudes, size, count);
+		System.arraycopy(other.latitudes, from, latitudes, size, count);
+		System.arraycopy(other.headings, from, headings, size, count);
+		size += count;
+	}
+
+	/**
+	 *
+	 * Cuts the path down to its first positions
+	 *
+	 * @param size The number of positions to keep
+	 */
+	void truncate(int size) {
+		this.size = Math.min(this.size, Math.max(size, 0));
+	}
+
+	/**
+	 *
+	 * Reverses the order of the positions, leaving each heading with the position it was stored with
+	 */
+	void reverse() {
+		for (int i = 0, j = size - 1; i < j; i++, j--) {
+			var lon = longitudes[i];
+			longitudes[i] = longitudes[j];
+			longitudes[j] = lon;
+			var lat = latitudes[i];
+			latitudes[i] = latitudes[j];
+			latitudes[j] = lat;
+			var heading = headings[i];
+			headings[i] = headings[j];
+			headings[j] = heading;
+		}
+	}
+
+	/**
+	 *
+	 * @return The number of positions in the path
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 *
+	 * @param i The index of a position
+	 * @return The longitude of the position
+	 */
+	double longitude(int i) {
+		return longitudes[i];
+	}
+
+	/**
+	 *
+	 * @param i The index of a position
+	 * @return The latitude of the position
+	 */
+	double latitude(int i) {
+		return latitudes[i];
+	}
+
+	/**
+	 *
+	 * @param i The index of a position
+	 * @return The angle flown to reach the position
+	 */
+	int heading(int i) {
+		return headings[i];
+	}
+
+	/**
+	 *
+	 * @param i The index of a position
+	 * @return A new Location at the position, for callers that need one
+	 */
+	Location location(int i) {
+		return new Node(longitudes[i], latitudes[i]);
+	}
+
+	/**
+	 *
+	 * @return A new Location at the last position of the path
+	 */
+	Location last() {
+		return location(size - 1);
+	}
+
+	/**
+	 *
+	 * @return The positions and headings, formatted as a list of [longitude,latitude, heading]
+	 */
+	@Override
+	public String toString() {
+		var s = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				s.append(", ");
+			}
+			s.append('[').append(longitudes[i]).append(',').append(latitudes[i]).append(", ").append(headings[i]).append(']');
+		}
+		return s.append(']').toString();
+	}
+
+	/**
+	 * Grows the arrays to at least the passed in capacity, doubling them so adding positions one at a time takes amortised constant time
+	 *
+	 * @param capacity The number of positions the path must be able to hold
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity <= longitudes.length) {
+			return;
+		}
+		int grown = Math.max(capacity, longitudes.length * 2);
+		longitudes = Arrays.copyOf(longitudes, grown);
+		latitudes = Arrays.copyOf(latitudes, grown);
+		headings = Arrays.copyOf(headings, grown);
+	}
+}
@@ -0,0 +1,141 @@
+package uk.ac.ed.inf.aqmaps;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ *
+ * Base for Pathers that wrap another Pather, passing every call on to it while keeping track of the parts of its
+ * configuration that change the paths it finds, so subclasses can tell when results they have stored are still valid.
+ *
+ * @author Yannik Nelson
+ * @see Pather
+ */
+abstract class ForwardingPather implements Pather {
+
+	protected final Pather pather;
+
+	//the parts of the wrapped Pather's configuration that change the paths it finds
+	private volatile double stepSize = 0.0003;
+	private volatile double lattice = 0.0;
+	private volatile long noFlyHash = 0;
+	private volatile long boundsHash = 0;
+	//the zones the no-fly hash was last computed from
+	private volatile ArrayList<ArrayList<Location>> noFlyZones;
+
+	/**
+	 *
+	 * @param p The Pather that will do the searching
+	 */
+	ForwardingPather(Pather p) {
+		this.pather = p;
+	}
+
+	@Override
+	public void setNoFlyZones(ArrayList<ArrayList<Location>> noFlyZones) {
+		pather.setNoFlyZones(noFlyZones);
+		if (noFlyZones != this.noFlyZones) {
+			this.noFlyHash = hashNoFlyZones(noFlyZones);
+			this.noFlyZones = noFlyZones;
+		}
+	}
+
+	@Override
+	public void setBounds(double ub, double lob, double leb, double rb) {
+		pather.setBounds(ub, lob, leb, rb);
+		long h = 17;
+		h = mix(h, Double.doubleToLongBits(ub));
+		h = mix(h, Double.doubleToLongBits(lob));
+		h = mix(h, Double.doubleToLongBits(leb));
+		h = mix(h, Double.doubleToLongBits(rb));
+		this.boundsHash = h;
+	}
+
+	@Override
+	public void setStepSize(double ss) {
+		pather.setStepSize(ss);
+		this.stepSize = ss;
+	}
+
+	@Override
+	public void setLatticeResolution(double resolution) {
+		pather.setLatticeResolution(resolution);
+		this.lattice = resolution;
+	}
+
+	/**
+	 * Closes the wrapped Pather
+	 */
+	@Override
+	public void close() throws IOException {
+		pather.close();
+	}
+
+	@Override
+	public FlightPath path(Location start, Location end, double tolerance) {
+		return pather.path(start, end, tolerance);
+	}
+
+	@Override
+	public Integer pathLength(Location start, Location end, double tolerance) {
+		return pather.pathLength(start, end, tolerance);
+	}
+
+	@Override
+	public double findDistance(Location p1, Location p2) {
+		return pather.findDistance(p1, p2);
+	}
+
+	/**
+	 *
+	 * @return The step size the wrapped Pather was last given
+	 */
+	double getStepSize() {
+		return stepSize;
+	}
+
+	/**
+	 *
+	 * @return The lattice size the wrapped Pather was last given, 0 if its positions are continuous
+	 */
+	double getLatticeResolution() {
+		return lattice;
+	}
+
+	/**
+	 *
+	 * @return A hash of the no-fly-zones and bounds the wrapped Pather was last given
+	 */
+	long getGeometryHash() {
+		return mix(noFlyHash, boundsHash);
+	}
+
+	/**
+	 *
+	 * Hashes every coordinate of every zone in order
+	 *
+	 * @param noFlyZones The no-fly-zones
+	 * @return The hash of the no-fly-zones
+	 */
+	static long hashNoFlyZones(ArrayList<ArrayList<Location>> noFlyZones) {
+		long h = 17;
+		for (var zone: noFlyZones) {
+			h = mix(h, zone.size());
+			for (var l: zone) {
+				h = mix(h, Double.doubleToLongBits(l.longitude()));
+				h = mix(h, Double.doubleToLongBits(l.latitude()));
+			}
+		}
+		return h;
+	}
+
+	/**
+	 *
+	 * @param h The hash so far
+	 * @param value The next value to include in the hash
+	 * @return The hash including the value
+	 */
+	static long mix(long h, long value) {
+		return (h ^ value) * 0x100000001B3L;
+	}
+}
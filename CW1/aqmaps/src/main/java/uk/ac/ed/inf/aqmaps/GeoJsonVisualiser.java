@@ -1,44 +1,88 @@
 package uk.ac.ed.inf.aqmaps;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 
-import com.mapbox.geojson.Feature;
-import com.mapbox.geojson.FeatureCollection;
-import com.mapbox.geojson.LineString;
-import com.mapbox.geojson.Point;
+import com.google.gson.stream.JsonWriter;
+import com.mapbox.geojson.utils.GeoJsonUtils;
 
 /**
- * Visualiser Implementation for a GeoJson Output
+ * Visualiser Implementation for a GeoJson Output<br>
+ * Each feature is written to a spool file as soon as it's added rather than held until the output is saved, so the memory used doesn't grow with
+ * the number of features or the length of the flight path. The spool lives in the system temp directory, so a run that is killed part way
+ * never leaves it in the output directory, and it's moved into place once the visualisation is output or deleted if that fails.<br>
+ * The features are written exactly as the Mapbox GeoJson library writes them, with coordinates rounded to 7 decimal places.
  * 
  * @author Yannik Nelson
  * @see Visualiser
  */
 class GeoJsonVisualiser implements Visualiser {
 	
-	//Stores all the features to be in the output GeoJson
-	ArrayList<Feature> features = new ArrayList<>();
+	//the file the features are written to as they're added, and the writer writing them, opened when the first feature is added
+	private Path spool;
+	private JsonWriter writer;
+	//set if writing a feature failed, so the output isn't saved incomplete
+	private Boolean failed = false;
 
 	/**
-	 * Method to convert a visited Sensor into a Feature with the appropriate properties
+	 * 
+	 * @return The writer, positioned inside the features array of the FeatureCollection
+	 * @throws IOException
+	 */
+	private JsonWriter writer() throws IOException {
+		if (writer == null) {
+			spool = Files.createTempFile("readings", ".geojson.part");
+			writer = new JsonWriter(Files.newBufferedWriter(spool));
+			writer.setHtmlSafe(true);
+			writer.beginObject().name("type").value("FeatureCollection").name("features").beginArray();
+		}
+		return writer;
+	}
+	
+	/**
+	 * Writes a Point feature with the passed in properties
+	 * 
+	 * @param location The location of the point
+	 * @param properties The names and values of the properties, alternating
+	 */
+	private void writePoint(Location location, String... properties) {
+		if (failed) {
+			return;
+		}
+		try {
+			var out = writer();
+			out.beginObject().name("type").value("Feature");
+			out.name("geometry").beginObject().name("type").value("Point").name("coordinates");
+			out.beginArray().value(GeoJsonUtils.trim(location.longitude())).value(GeoJsonUtils.trim(location.latitude())).endArray();
+			out.endObject();
+			out.name("properties").beginObject();
+			for (int i = 0; i < properties.length; i += 2) {
+				out.name(properties[i]).value(properties[i+1]);
+			}
+			out.endObject();
+			out.endObject();
+		} catch (IOException e) {
+			System.out.println("Failed to write a sensor to the GeoJson");
+			failed = true;
+		}
+	}
+
+	/**
+	 * Method to write a visited Sensor as a feature with the appropriate properties
 	 * 
 	 * @param Sensor we have visted and would like the feature and properties of
-	 * @return Feature corresponding to the Sensor and the appropriate features
 	 */
-	private Feature getVisitedSensorFeature(Sensor sensor) {
-		//create the feature and add the location property with the value of the what3words location of the sensor
-		var sensorPoint = Feature.fromGeometry(Point.fromLngLat(sensor.longitude(), sensor.latitude()));
-		sensorPoint.addStringProperty("location", sensor.getWhat3Words());
+	private void writeVisitedSensorFeature(Sensor sensor) {
 		//get the reading from the sensor and check if its valid based on the battery and the reading
 		//if it's not a valid reading set the rgb-string, marker-color and marker-symbol to the appropriate values
 		String value = sensor.getReading();
 		if (sensor.getBattery() < 10.0 || value.equals("NaN") || value.equals("null")) {
-			sensorPoint.addStringProperty("rgb-string", "#000000");
-			sensorPoint.addStringProperty("marker-color", "#000000");
-			sensorPoint.addStringProperty("marker-symbol", "cross");
-			return sensorPoint;
+			writePoint(sensor, "location", sensor.getWhat3Words(), "rgb-string", "#000000", "marker-color", "#000000", "marker-symbol", "cross");
+			return;
 		}
 		//otherwise set the rgb-string, marker-color and marker-symbol to the appropriate values based off of the value of the reading
 		var val = Double.parseDouble(value);
@@ -69,67 +113,92 @@ class GeoJsonVisualiser implements Visualiser {
 			colour = "#ff0000";
 			markerSymbol = "danger";
 		}
-		sensorPoint.addStringProperty("rgb-string", colour);
-		sensorPoint.addStringProperty("marker-color", colour);
-		sensorPoint.addStringProperty("marker-symbol", markerSymbol);
-		return sensorPoint;
+		writePoint(sensor, "location", sensor.getWhat3Words(), "rgb-string", colour, "marker-color", colour, "marker-symbol", markerSymbol);
 	}
 	
 	/**
-	 * Method to convert an unvisited Sensor into a Feature with the appropriate properties
+	 * Method to write an unvisited Sensor as a feature with the appropriate properties
 	 * 
 	 * @param Sensor we have not visted and would like the feature and properties of
-	 * @return Feature corresponding to the Sensor and the appropriate features
 	 */
-	private Feature getNotVisitedSensorFeature(Sensor sensor) {
-		//create the feature and add the location property with the value of the what3words location of the sensor
-		var sensorPoint = Feature.fromGeometry(Point.fromLngLat(sensor.longitude(), sensor.latitude()));
-		//set the appropriate properties
-		sensorPoint.addStringProperty("location", sensor.getWhat3Words());
-		sensorPoint.addStringProperty("rgb-string", "#aaaaaa");
-		sensorPoint.addStringProperty("marker-color", "#aaaaaa");
-		return sensorPoint;
+	private void writeNotVisitedSensorFeature(Sensor sensor) {
+		writePoint(sensor, "location", sensor.getWhat3Words(), "rgb-string", "#aaaaaa", "marker-color", "#aaaaaa");
 	}
 
 	@Override
 	public void AddVisitedSensors(ArrayList<Sensor> sensors) {
-		//run through the sensors and add the result of getVisitedSensorFeature to the feature list
+		//run through the sensors and write each as a feature
 		for (var s: sensors) {
-			features.add(getVisitedSensorFeature(s));
+			writeVisitedSensorFeature(s);
 		}
 	}
 
 	@Override
 	public void AddNotVisitedSensors(ArrayList<Sensor> sensors) {
-		//run through the sensors and add the result of getNotVisitedSensorFeature to the feature list
+		//run through the sensors and write each as a feature
 		for (var s: sensors) {
-			features.add(getNotVisitedSensorFeature(s));
+			writeNotVisitedSensorFeature(s);
 		}
 	}
 
 	@Override
-	public void AddFlightPath(ArrayList<Location> path) {
+	public void AddFlightPath(FlightPath path) {
 		//print details about the path adn linestring being output
 		System.out.println(String.format("Final Path Length: %d (%d Points added to LineString)", path.size()-1, path.size()));
-		//Convert all of the locations visited to points and add then to the line list in order
-		var line = new ArrayList<Point>();
-		for (var p: path) {
-			line.add(Point.fromLngLat(p.longitude(), p.latitude()));
+		if (failed) {
+			return;
+		}
+		//write the locations visited straight into the coordinates of a LineString feature, in order
+		try {
+			var out = writer();
+			out.beginObject().name("type").value("Feature");
+			out.name("geometry").beginObject().name("type").value("LineString").name("coordinates").beginArray();
+			for (int i = 0; i < path.size(); i++) {
+				out.beginArray().value(GeoJsonUtils.trim(path.longitude(i))).value(GeoJsonUtils.trim(path.latitude(i))).endArray();
+			}
+			out.endArray().endObject();
+			out.name("properties").beginObject().endObject();
+			out.endObject();
+		} catch (IOException e) {
+			System.out.println("Failed to write the flight path to the GeoJson");
+			failed = true;
 		}
-		//convert the list of points into a linestring, then into a feature and add it to the features list
-		features.add(Feature.fromGeometry(LineString.fromLngLats(line)));
 	}
 
 	@Override
 	public void OuputVisualisation(String filePath) {
-		//convert the feature list into a FeatureCollection and save it's Json to the file relative to where the jar is being run
-		var coll = FeatureCollection.fromFeatures(features);
 		var pathToOutput = Paths.get(System.getProperty("user.dir"), filePath);
 		try {
-			Files.write(pathToOutput, coll.toJson().getBytes());
+			//a failed write may have stopped part way through a feature, so the FeatureCollection can't be closed
+			if (failed) {
+				throw new IOException("The GeoJson is incomplete");
+			}
+			//close the FeatureCollection and move the spool into place relative to where the jar is being run
+			var out = writer();
+			out.endArray().endObject();
+			out.close();
+			Files.move(spool, pathToOutput, StandardCopyOption.REPLACE_EXISTING);
 			System.out.println("GeoJson saved Successfully");
 		} catch (Exception e) {
 			System.out.println("Failed to write GeoJson to the files");
+		} finally {
+			//close the spool if it's still open, the writer closes the file before complaining the document is incomplete
+			if (writer != null) {
+				try {
+					writer.close();
+				} catch (IOException e) {
+					//the file is closed either way
+				}
+				writer = null;
+			}
+			//if the spool wasn't moved into place it's incomplete, so don't leave it behind
+			if (spool != null) {
+				try {
+					Files.deleteIfExists(spool);
+				} catch (IOException e) {
+					System.out.println("Failed to delete the GeoJson spool file");
+				}
+			}
 		}
 	}
 
@@ -0,0 +1,465 @@
+package uk.ac.ed.inf.aqmaps;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ *
+ * Iterated Lin-Kernighan variant of TSPSolution, replacing the Ant Colony Optimisation with a local search that chains 2-Opt moves until they stop paying off.<br>
+ * Lin-Kernighan reverses parts of the tour, which changes the cost of an asymmetric tour, so it works on the standard symmetric transformation of the
+ * connection matrix: every sensor is split into an in and an out copy joined by a free connection, and the cost from sensor i to sensor j becomes the
+ * connection between the out copy of i and the in copy of j. Every other connection is made too expensive to use. Any tour that keeps all the free
+ * connections alternates in and out copies and maps straight back to a tour of the sensors.<br>
+ * The search starts from a nearest neighbour tour. It then repeatedly kicks the best tour with a random double bridge and runs Lin-Kernighan on it,
+ * stopping when a number of kicks in a row don't improve it or a time budget runs out.
+ *
+ * @author Yannik Nelson
+ * @see TSPSolution
+ */
+class LKSolution extends TSPSolution {
+
+	//the cost of a connection that can't be used, small enough that sums of a few of them don't overflow
+	private static final int INF = 1 << 24;
+	//the number of closest copies each copy tries to connect to
+	private static final int CANDIDATES = 8;
+	//the most 2-Opt moves chained together in one Lin-Kernighan step
+	private static final int DEPTH = 50;
+	//the number of kicks in a row without improving the best tour before stopping
+	private Integer patience = 100;
+	//the longest the search will run for in milliseconds
+	private Long budget = 1000L;
+
+	//the number of copies, the symmetric tour of them and the position of each copy in it
+	private int copies;
+	private int[] tour;
+	private int[] position;
+	//the amount added to every real connection so that a tour using every free connection is always cheaper than one that doesn't
+	private int big;
+	private int[][] candidates;
+
+	/**
+	 * Creates a solution that uses all of the available processors
+	 *
+	 * @param p The Pather used to find the paths between the sensors
+	 * @param g The random number generator used for the kicks
+	 */
+	LKSolution(Pather p, Random g) {
+		super(p, g);
+	}
+
+	/**
+	 *
+	 * @param p The Pather used to find the paths between the sensors, it must allow concurrent searches
+	 * @param g The random number generator used for the kicks
+	 * @param threads The number of threads to use
+	 */
+	LKSolution(Pather p, Random g, Integer threads) {
+		super(p, g, threads);
+	}
+
+	/**
+	 *
+	 * @param p The Pather used to find the paths between the sensors, it must allow concurrent searches
+	 * @param g The random number generator used for the kicks
+	 * @param workers The pool to run on, shared with other solutions
+	 */
+	LKSolution(Pather p, Random g, ForkJoinPool workers) {
+		super(p, g, workers);
+	}
+
+	/**
+	 *
+	 * @param patience The number of kicks in a row without improving the best tour before the search stops
+	 * @param budget The longest the search will run for in milliseconds
+	 */
+	void setStopRule(Integer patience, Long budget) {
+		this.patience = patience;
+		this.budget = budget;
+	}
+
+	/**
+	 * Iterated Lin-Kernighan on the symmetric transformation of the connection matrix
+	 *
+	 * @return The best tour found as indices into the connection matrix
+	 */
+	@Override
+	protected int[] ACOTSP() {
+		if (n < 4) {
+			return nearestNeighbourTour();
+		}
+		long deadline = System.currentTimeMillis() + budget;
+		copies = 2*n;
+		big = 1;
+		for (int i = 0; i < n; i++) {
+			int max = 0;
+			for (int j = 0; j < n; j++) {
+				max = Math.max(max, connectionMatrix[i*n+j]);
+			}
+			big += max;
+		}
+		buildCandidates();
+		var best = optimise(nearestNeighbourTour());
+		int bestCost = getCost(best);
+		int kicks = 0;
+		int sinceImproved = 0;
+		while (sinceImproved < patience && System.currentTimeMillis() < deadline) {
+			kicks++;
+			sinceImproved++;
+			var kicked = optimise(doubleBridge(best));
+			int cost = getCost(kicked);
+			if (cost < bestCost) {
+				sinceImproved = 0;
+			}
+			//accept equal tours too so the search can drift along plateaus
+			if (cost <= bestCost) {
+				best = kicked;
+				bestCost = cost;
+			}
+		}
+		System.out.println(String.format("Lin-Kernighan stopped after %d kicks", kicks));
+		return best;
+	}
+
+	/**
+	 *
+	 * @return A tour starting at sensor 0 that always goes to the closest unvisited sensor next
+	 */
+	private int[] nearestNeighbourTour() {
+		var order = new int[n];
+		var visited = new boolean[n];
+		visited[0] = true;
+		for (int i = 1; i < n; i++) {
+			int last = order[i-1];
+			int next = -1;
+			for (int s = 0; s < n; s++) {
+				if (!visited[s] && (next == -1 || connectionMatrix[last*n+s] < connectionMatrix[last*n+next])) {
+					next = s;
+				}
+			}
+			order[i] = next;
+			visited[next] = true;
+		}
+		return order;
+	}
+
+	/**
+	 *
+	 * Cuts the tour into four parts and swaps the middle two, a move the 2-Opt moves of Lin-Kernighan can't easily undo. It doesn't reverse anything so it suits the asymmetric costs
+	 *
+	 * @param order A tour as indices into the connection matrix
+	 * @return The kicked tour
+	 */
+	private int[] doubleBridge(int[] order) {
+		int a = 1 + generator.nextInt(n-3);
+		int b = a + 1 + generator.nextInt(n-a-2);
+		int c = b + 1 + generator.nextInt(n-b-1);
+		var kicked = new int[n];
+		int k = 0;
+		for (int i = 0; i < a; i++) {
+			kicked[k++] = order[i];
+		}
+		for (int i = b; i < c; i++) {
+			kicked[k++] = order[i];
+		}
+		for (int i = a; i < b; i++) {
+			kicked[k++] = order[i];
+		}
+		for (int i = c; i < n; i++) {
+			kicked[k++] = order[i];
+		}
+		return kicked;
+	}
+
+	/**
+	 *
+	 * Runs Lin-Kernighan from every copy until no copy can improve the tour
+	 *
+	 * @param order A tour as indices into the connection matrix
+	 * @return The improved tour as indices into the connection matrix
+	 */
+	private int[] optimise(int[] order) {
+		//the in copy of sensor s is s and its out copy is s+n
+		tour = new int[copies];
+		position = new int[copies];
+		for (int i = 0; i < n; i++) {
+			tour[2*i] = order[i];
+			tour[2*i+1] = order[i]+n;
+		}
+		for (int i = 0; i < copies; i++) {
+			position[tour[i]] = i;
+		}
+		//copies whose don't-look bits are clear
+		var active = new ArrayDeque<Integer>();
+		var queued = new boolean[copies];
+		for (int i = 0; i < copies; i++) {
+			active.add(tour[i]);
+			queued[tour[i]] = true;
+		}
+		while (!active.isEmpty()) {
+			int t1 = active.poll();
+			queued[t1] = false;
+			//try breaking the connection on each side of t1, turning the tour around puts the predecessor after it
+			boolean improved = step(t1);
+			if (!improved) {
+				reverse(0, copies-1);
+				improved = step(t1);
+			}
+			if (improved) {
+				//the copies around t1 may now have improving moves
+				for (int d = -2; d <= 2; d++) {
+					int c = tour[Math.floorMod(position[t1]+d, copies)];
+					if (!queued[c]) {
+						queued[c] = true;
+						active.add(c);
+					}
+				}
+			}
+		}
+		//read the sensors back off in the direction that follows the free connection out of sensor 0's in copy
+		boolean forward = tour[(position[0]+1)%copies] == n;
+		var result = new int[n];
+		for (int i = 0; i < n; i++) {
+			int at = forward ? position[0] + 2*i : position[0] - 2*i;
+			result[i] = tour[Math.floorMod(at, copies)];
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * One Lin-Kernighan step: starting by breaking the connection from t1 to its successor t2, chains moves that each add a connection from the
+	 * current end t2 and break others so the tour can be closed back to t1, while the gain so far stays positive. Each move is the better of a 2-Opt move
+	 * (which reverses part of the tour) and the reversal free 3-Opt segment swap of the original Lin-Kernighan, which is needed because in the symmetric
+	 * transformation every 2-Opt move breaks a free connection. Connections added or broken by the chain can't be undone by it, and the chain is
+	 * rolled back to the point where closing it gained the most.
+	 *
+	 * @param t1 The copy the chain starts from
+	 * @return Boolean representing if the tour was improved
+	 */
+	private boolean step(int t1) {
+		int t2 = next(t1);
+		//the gain so far not counting the connection that closes the tour
+		int gain = cost(t1, t2);
+		int bestGain = 0;
+		int bestMoves = 0;
+		//the positions changed by each move so they can be undone, a split of -1 marks a reversal
+		var starts = new int[DEPTH];
+		var ends = new int[DEPTH];
+		var splits = new int[DEPTH];
+		//the connections added and broken by the chain so far
+		var added = new long[2*DEPTH];
+		var broken = new long[2*DEPTH+1];
+		int addedCount = 0;
+		int brokenCount = 0;
+		broken[brokenCount++] = edge(t1, t2);
+		int moves = 0;
+		while (moves < DEPTH) {
+			int bestG = Integer.MIN_VALUE;
+			int bestT3 = -1;
+			int bestT5 = -1;
+			for (int t3: candidates[t2]) {
+				int g = gain - cost(t2, t3);
+				if (g <= 0) {
+					//the candidates are in cost order so none of the rest can keep the gain positive
+					break;
+				}
+				if (t3 == t1 || contains(broken, brokenCount, edge(t2, t3))) {
+					continue;
+				}
+				//2-Opt: break the connection into t3 and reverse t2 to t4
+				int t4 = previous(t3);
+				if (t3 != next(t2) && !contains(added, addedCount, edge(t4, t3)) && g + cost(t4, t3) > bestG) {
+					bestG = g + cost(t4, t3);
+					bestT3 = t3;
+					bestT5 = -1;
+				}
+				//3-Opt: break the connection out of t3, connect t4 back into the part between t2 and t3 at t5 and swap the parts either side of t5
+				t4 = next(t3);
+				if (t4 == t1 || contains(added, addedCount, edge(t3, t4))) {
+					continue;
+				}
+				int g1 = g + cost(t3, t4);
+				for (int t5: candidates[t4]) {
+					int g2 = g1 - cost(t4, t5);
+					if (g2 <= 0) {
+						break;
+					}
+					if (t5 == t3 || !between(t1, t2, t5, t3) || contains(broken, brokenCount, edge(t4, t5))) {
+						continue;
+					}
+					int t6 = next(t5);
+					if (!contains(added, addedCount, edge(t5, t6)) && g2 + cost(t5, t6) > bestG) {
+						bestG = g2 + cost(t5, t6);
+						bestT3 = t3;
+						bestT5 = t5;
+					}
+				}
+			}
+			if (bestT3 == -1) {
+				break;
+			}
+			int t3 = bestT3;
+			if (bestT5 == -1) {
+				//replace t1-t2 and t4-t3 with t2-t3 and t1-t4 by reversing t2 to t4
+				int t4 = previous(t3);
+				starts[moves] = position[t2];
+				ends[moves] = position[t4];
+				splits[moves] = -1;
+				reverse(position[t2], position[t4]);
+				added[addedCount++] = edge(t2, t3);
+				broken[brokenCount++] = edge(t4, t3);
+				t2 = t4;
+			} else {
+				//t1 [t2..t5] [t6..t3] t4 becomes t1 [t6..t3] [t2..t5] t4
+				int t4 = next(t3);
+				int t5 = bestT5;
+				int t6 = next(t5);
+				starts[moves] = position[t2];
+				ends[moves] = position[t3];
+				splits[moves] = Math.floorMod(position[t5]-position[t2], copies)+1;
+				swap(starts[moves], ends[moves], splits[moves]);
+				added[addedCount++] = edge(t2, t3);
+				added[addedCount++] = edge(t4, t5);
+				broken[brokenCount++] = edge(t3, t4);
+				broken[brokenCount++] = edge(t5, t6);
+				t2 = t6;
+			}
+			moves++;
+			gain = bestG;
+			int closed = gain - cost(t2, t1);
+			if (closed > bestGain) {
+				bestGain = closed;
+				bestMoves = moves;
+			}
+		}
+		//undo every move past the best point
+		for (int m = moves-1; m >= bestMoves; m--) {
+			if (splits[m] == -1) {
+				reverse(starts[m], ends[m]);
+			} else {
+				swap(starts[m], ends[m], Math.floorMod(ends[m]-starts[m], copies)+1-splits[m]);
+			}
+		}
+		return bestGain > 0;
+	}
+
+	/**
+	 *
+	 * @return Boolean representing if b comes at or after a and before c, going forwards around the tour from t1
+	 */
+	private boolean between(int t1, int a, int b, int c) {
+		int rb = Math.floorMod(position[b]-position[t1], copies);
+		return Math.floorMod(position[a]-position[t1], copies) <= rb && rb < Math.floorMod(position[c]-position[t1], copies);
+	}
+
+	/**
+	 *
+	 * Swaps the two neighbouring parts of the tour from position i forwards to position j without reversing either
+	 *
+	 * @param i The first position of the first part
+	 * @param j The last position of the second part
+	 * @param split The length of the first part
+	 */
+	private void swap(int i, int j, int split) {
+		int length = Math.floorMod(j-i, copies)+1;
+		//reversing the whole then each part puts the parts back the right way round
+		reverse(i, j);
+		reverse(i, (i+length-split-1)%copies);
+		reverse((i+length-split)%copies, j);
+	}
+
+	/**
+	 *
+	 * @param a A copy
+	 * @param b Another copy
+	 * @return A key for the connection between the copies that's the same whichever way round they're passed in
+	 */
+	private static long edge(int a, int b) {
+		return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+	}
+
+	private static boolean contains(long[] edges, int count, long edge) {
+		for (int i = 0; i < count; i++) {
+			if (edges[i] == edge) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 *
+	 * Reverses the part of the tour from position i forwards to position j, wrapping around the end of the array
+	 *
+	 * @param i The first position to reverse
+	 * @param j The last position to reverse
+	 */
+	private void reverse(int i, int j) {
+		int length = Math.floorMod(j-i, copies)+1;
+		for (int k = 0; k < length/2; k++) {
+			int a = (i+k)%copies;
+			int b = Math.floorMod(j-k, copies);
+			int t = tour[a];
+			tour[a] = tour[b];
+			tour[b] = t;
+			position[tour[a]] = a;
+			position[tour[b]] = b;
+		}
+	}
+
+	private int next(int copy) {
+		return tour[(position[copy]+1)%copies];
+	}
+
+	private int previous(int copy) {
+		return tour[Math.floorMod(position[copy]-1, copies)];
+	}
+
+	/**
+	 *
+	 * @param a A copy
+	 * @param b Another copy
+	 * @return The symmetric cost of the connection between the copies
+	 */
+	private int cost(int a, int b) {
+		int in = Math.min(a, b);
+		int out = Math.max(a, b);
+		if (in >= n || out < n) {
+			//two in copies or two out copies
+			return INF;
+		}
+		if (out-n == in) {
+			return 0;
+		}
+		return connectionMatrix[(out-n)*n+in] + big;
+	}
+
+	/**
+	 * Finds the cheapest connections from each copy, cheapest first
+	 */
+	private void buildCandidates() {
+		int k = Math.min(CANDIDATES, n);
+		candidates = new int[copies][];
+		for (int a = 0; a < copies; a++) {
+			var list = new int[k];
+			int size = 0;
+			//only copies of the other kind can be connected to
+			int from = a < n ? n : 0;
+			for (int b = from; b < from+n; b++) {
+				int c = cost(a, b);
+				if (size == k && c >= cost(a, list[k-1])) {
+					continue;
+				}
+				int at = Math.min(size, k-1);
+				while (at > 0 && cost(a, list[at-1]) > c) {
+					list[at] = list[at-1];
+					at--;
+				}
+				list[at] = b;
+				size = Math.min(size+1, k);
+			}
+			candidates[a] = list;
+		}
+	}
+}
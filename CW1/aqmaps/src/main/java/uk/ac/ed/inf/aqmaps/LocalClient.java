@@ -0,0 +1,157 @@
+package uk.ac.ed.inf.aqmaps;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.gson.JsonParseException;
+
+/**
+ * Implementation of ClientWrapper that reads the web server's tree of files straight from disk instead of asking the server for them,
+ * so offline replays and benchmarks don't depend on the server being up and only measure the planning.<br>
+ * The tree can be a directory or a zip (or jar) holding one, with the same layout as the server: buildings/no-fly-zones.geojson,
+ * maps/YYYY/MM/DD/air-quality-data.json and words/a/b/c/details.json. Files are read through NIO channels and decoded as they stream in.
+ * 
+ * @author Yannik Nelson
+ * @see Client
+ */
+class LocalClient implements ClientWrapper {
+	
+	private static final String NOFLY = "buildings/no-fly-zones.geojson";
+	
+	//the top of the server tree
+	private final Path root;
+	//the zip the tree is read from, null if it's read from a directory
+	private final FileSystem zip;
+	//the no-fly-zones, read once since the tree doesn't change while it's being read
+	private ArrayList<ArrayList<Location>> noFly;
+	//the coordinates of every What3Words location read so far
+	private final ConcurrentHashMap<String, Location> words = new ConcurrentHashMap<>();
+	
+	/**
+	 * 
+	 * @param tree A directory holding the server tree, or a zip or jar file holding it either at the top or in a single directory
+	 * @throws IOException If the tree can't be opened or has no no-fly-zones
+	 */
+	LocalClient(Path tree) throws IOException {
+		if (!Files.isRegularFile(tree)) {
+			this.zip = null;
+			this.root = findRoot(tree);
+			return;
+		}
+		this.zip = FileSystems.newFileSystem(tree, (ClassLoader) null);
+		try {
+			this.root = findRoot(zip.getRootDirectories().iterator().next());
+		} catch (IOException e) {
+			zip.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Closes the zip the tree is read from, if there is one
+	 */
+	@Override
+	public void close() throws IOException {
+		if (zip != null) {
+			zip.close();
+		}
+	}
+	
+	/**
+	 * 
+	 * @param top The top of a directory or zip
+	 * @return The directory holding the server tree, which is either the top or the only directory in it that has the no-fly-zones
+	 * @throws IOException If the server tree can't be found
+	 */
+	private static Path findRoot(Path top) throws IOException {
+		if (Files.exists(top.resolve(NOFLY))) {
+			return top;
+		}
+		try (var children = Files.list(top)) {
+			for (var child: (Iterable<Path>) children::iterator) {
+				if (Files.exists(child.resolve(NOFLY))) {
+					return child;
+				}
+			}
+		}
+		throw new IOException("No server tree in " + top.toUri());
+	}
+	
+	/**
+	 * 
+	 * @return The no-fly-zones in the tree, as the same list every time so Pathers can tell they already have them
+	 * @throws IOException
+	 */
+	@Override
+	public synchronized ArrayList<ArrayList<Location>> getNoFly() throws IOException {
+		if (noFly == null) {
+			try (var in = open(NOFLY)) {
+				noFly = ServerJson.noFlyZones(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+			}
+		}
+		return noFly;
+	}
+	
+	/**
+	 * 
+	 * @throws JsonParseException If there's no air quality data for the date
+	 */
+	@Override
+	public ArrayList<Sensor> getDestinations(String day, String month, String year) throws IOException, InterruptedException {
+		var file = "maps/" + year + "/" + month + "/" + day + "/air-quality-data.json";
+		if (!Files.exists(root.resolve(file))) {
+			throw new JsonParseException("No air quality data for " + day + "/" + month + "/" + year);
+		}
+		var sensors = new ArrayList<Sensor>();
+		try (var in = open(file)) {
+			ServerJson.airQuality(in, day + "/" + month + "/" + year, (what3words, battery, reading) -> {
+				var location = LocationFromWords(what3words);
+				sensors.add(new SensorNode(what3words, location.longitude(), location.latitude(), battery, reading));
+			});
+		}
+		return sensors;
+	}
+	
+	@Override
+	public Location LocationFromWords(String what3words) throws IOException {
+		var location = words.get(what3words);
+		if (location == null) {
+			//split the What3Words into its three components to find its details in the tree
+			String parts[] = what3words.split("\\.", 3);
+			try (var in = open("words/" + parts[0] + "/" + parts[1] + "/" + parts[2] + "/details.json")) {
+				location = ServerJson.coordinates(in);
+			}
+			words.putIfAbsent(what3words, location);
+		}
+		return location;
+	}
+	
+	/**
+	 * Stand in for getting data from sensors
+	 * 
+	 * @return Sensor holding data
+	 */
+	@Override
+	public Sensor getSensorData(Sensor sensor) {
+		return sensor;
+	}
+	
+	/**
+	 * 
+	 * @param file The path of a file in the tree, relative to its top
+	 * @return A stream reading the file through a channel
+	 * @throws IOException
+	 */
+	private InputStream open(String file) throws IOException {
+		return Channels.newInputStream(Files.newByteChannel(root.resolve(file), StandardOpenOption.READ));
+	}
+}
@@ -11,11 +11,11 @@ interface Location {
 	 * 
 	 * @return The longitude value of the Location
 	 */
-	Double longitude();
+	double longitude();
 	
 	/**
 	 * 
 	 * @return The latitude value of the Location
 	 */
-	Double latitude();
+	double latitude();
 }
@@ -1,9 +1,5 @@
 package uk.ac.ed.inf.aqmaps;
 
-import java.util.ArrayList;
-
-import org.javatuples.Pair;
-
 /**
  * 
  * Interface defining the minimum functions required of a module to log the steps of the drone's flight
@@ -21,7 +17,7 @@ interface Logger {
 	 * @param sensor
 	 * @return
 	 */
-	Integer LogSteps(ArrayList<Pair<Location, Integer>> route, Sensor sensor);
+	Integer LogSteps(FlightPath route, Sensor sensor);
 	
 	/**
 	 * Will save the txt file containing the logged steps to the passed in path (Note the path must end in .txt)
@@ -0,0 +1,151 @@
+package uk.ac.ed.inf.aqmaps;
+
+import java.util.Arrays;
+
+/**
+ *
+ * Minimal open addressing hash map from primitive long keys to primitive int values.<br>
+ * Collisions are resolved with linear probing and the table is doubled whenever it becomes half full, so no objects are allocated per entry.
+ *
+ * @author Yannik Nelson
+ *
+ */
+class LongIntHashMap {
+
+	//key used to mark an empty slot, the key itself is tracked separately so it can still be stored
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	private long[] keys;
+	private int[] values;
+	private int size = 0;
+	private boolean hasEmptyKey = false;
+	private int emptyKeyValue;
+
+	LongIntHashMap() {
+		this(64);
+	}
+
+	/**
+	 *
+	 * @param expected The number of entries expected, used to size the table
+	 */
+	LongIntHashMap(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1;
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(keys, EMPTY);
+	}
+
+	/**
+	 *
+	 * @param key The key to look up
+	 * @param missing The value to return if the key is not in the map
+	 * @return The value stored against the key, or the missing value
+	 */
+	int get(long key, int missing) {
+		if (key == EMPTY) {
+			return hasEmptyKey ? emptyKeyValue : missing;
+		}
+		int slot = slot(key);
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == key) {
+				return values[slot];
+			}
+			slot = (slot + 1) & (keys.length - 1);
+		}
+		return missing;
+	}
+
+	/**
+	 *
+	 * @param key The key to look up
+	 * @return Boolean representing if the key is in the map
+	 */
+	boolean containsKey(long key) {
+		if (key == EMPTY) {
+			return hasEmptyKey;
+		}
+		int slot = slot(key);
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == key) {
+				return true;
+			}
+			slot = (slot + 1) & (keys.length - 1);
+		}
+		return false;
+	}
+
+	/**
+	 *
+	 * Stores the value against the key, replacing any previous value
+	 *
+	 * @param key The key
+	 * @param value The value
+	 */
+	void put(long key, int value) {
+		if (key == EMPTY) {
+			if (!hasEmptyKey) {
+				size++;
+			}
+			hasEmptyKey = true;
+			emptyKeyValue = value;
+			return;
+		}
+		int slot = slot(key);
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == key) {
+				values[slot] = value;
+				return;
+			}
+			slot = (slot + 1) & (keys.length - 1);
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+		//keep the table at most half full so probe sequences stay short
+		if (size * 2 > keys.length) {
+			grow();
+		}
+	}
+
+	/**
+	 *
+	 * @return The number of entries in the map
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Doubles the size of the table and reinserts every entry
+	 */
+	private void grow() {
+		var oldKeys = keys;
+		var oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new int[oldValues.length * 2];
+		Arrays.fill(keys, EMPTY);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] == EMPTY) {
+				continue;
+			}
+			int slot = slot(oldKeys[i]);
+			while (keys[slot] != EMPTY) {
+				slot = (slot + 1) & (keys.length - 1);
+			}
+			keys[slot] = oldKeys[i];
+			values[slot] = oldValues[i];
+		}
+	}
+
+	/**
+	 *
+	 * @param key The key
+	 * @return The first slot of the table to probe for the key
+	 */
+	private int slot(long key) {
+		//spread the bits of the key with the golden ratio multiplier so packed coordinates don't cluster
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & (keys.length - 1);
+	}
+}
@@ -0,0 +1,153 @@
+package uk.ac.ed.inf.aqmaps;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ *
+ * MAX-MIN Ant System variant of TSPSolution, replacing the fixed 100 iterations of the Ant Colony Optimisation with one that stops once it stops improving.<br>
+ * Only the best tour found so far lays pheromone and every connection's pheromone is kept between an upper and lower bound so the ants never
+ * all fall into following the same tour. The colony stops when the best tour hasn't improved for a number of iterations or a time budget runs out,
+ * whichever comes first. The 2-Opt and further local search stages are run on the result as usual.
+ *
+ * @author Yannik Nelson
+ * @see TSPSolution
+ */
+class MMASSolution extends TSPSolution {
+
+	//pheromone evaporation rate
+	private static final double EVAP = 0.1;
+	//the chance an ant that has converged to the pheromones builds the best tour, used to set the lower pheromone bound
+	private static final double PBEST = 0.05;
+	//The weight given to the pheromone strength and the length of a connection when choosing the next Sensor
+	private static final double A = 1.0;
+	private static final double B = 4.0;
+	//the most ants ever built in one iteration
+	private static final int MAXANTS = 25;
+	//the number of iterations without the best tour improving before stopping
+	private Integer patience = 50;
+	//the longest the colony will run for in milliseconds
+	private Long budget = 2000L;
+
+	/**
+	 * Creates a solution that uses all of the available processors
+	 *
+	 * @param p The Pather used to find the paths between the sensors
+	 * @param g The random number generator used by the Ant Colony Optimisation
+	 */
+	MMASSolution(Pather p, Random g) {
+		super(p, g);
+	}
+
+	/**
+	 *
+	 * @param p The Pather used to find the paths between the sensors, it must allow concurrent searches
+	 * @param g The random number generator used by the Ant Colony Optimisation
+	 * @param threads The number of threads to use
+	 */
+	MMASSolution(Pather p, Random g, Integer threads) {
+		super(p, g, threads);
+	}
+
+	/**
+	 *
+	 * @param p The Pather used to find the paths between the sensors, it must allow concurrent searches
+	 * @param g The random number generator used by the Ant Colony Optimisation
+	 * @param workers The pool to run on, shared with other solutions
+	 */
+	MMASSolution(Pather p, Random g, ForkJoinPool workers) {
+		super(p, g, workers);
+	}
+
+	/**
+	 *
+	 * @param patience The number of iterations without the best tour improving before the colony stops
+	 * @param budget The longest the colony will run for in milliseconds
+	 */
+	void setStopRule(Integer patience, Long budget) {
+		this.patience = patience;
+		this.budget = budget;
+	}
+
+	/**
+	 * MAX-MIN Ant System for the Travelling Salesman Problem, working on the indices of the sensors in the connection matrix
+	 *
+	 * @return The best tour found as indices into the connection matrix
+	 */
+	@Override
+	protected int[] ACOTSP() {
+		long deadline = System.currentTimeMillis() + budget;
+		//start from the sensors in the order they were given, this also sets the first pheromone bounds
+		var bestRoute = new int[n];
+		for (int i = 0; i < n; i++) {
+			bestRoute[i] = i;
+		}
+		int bestLength = getCost(bestRoute);
+		int k = Math.min(n, MAXANTS);
+		var heuristic = heuristic(B);
+		var candidates = nearestNeighbours(CANDIDATES);
+		//every connection starts at the upper bound so the first iterations explore widely
+		var pheromone = new double[n*n];
+		double max = 1.0/(EVAP*Math.max(1, bestLength));
+		double min = minimum(max);
+		Arrays.fill(pheromone, max);
+		var choice = new double[n*n];
+		int iterations = 0;
+		int sinceImproved = 0;
+		while (sinceImproved < patience && System.currentTimeMillis() < deadline) {
+			iterations++;
+			sinceImproved++;
+			for (int i = 0; i < n*n; i++) {
+				choice[i] = (A == 1.0 ? pheromone[i] : Math.pow(pheromone[i], A)) * heuristic[i];
+			}
+			//find the iteration's best ant and polish it with the 2-Opt before it can become the best so far
+			int[] iterationBest = null;
+			int iterationLength = Integer.MAX_VALUE;
+			for (var ant: buildAnts(choice, candidates, k)) {
+				int length = getCost(ant);
+				if (length < iterationLength) {
+					iterationLength = length;
+					iterationBest = ant;
+				}
+			}
+			Two_OPT(iterationBest);
+			iterationLength = getCost(iterationBest);
+			if (iterationLength < bestLength) {
+				bestLength = iterationLength;
+				bestRoute = iterationBest;
+				sinceImproved = 0;
+			}
+			//the bounds follow the best tour found so far
+			max = 1.0/(EVAP*Math.max(1, bestLength));
+			min = minimum(max);
+			//evaporate every connection, then only the best tour so far (including the return to its start) lays pheromone
+			for (int i = 0; i < n*n; i++) {
+				pheromone[i] *= (1-EVAP);
+			}
+			for (int j = 0; j < n; j++) {
+				pheromone[bestRoute[j]*n + bestRoute[(j+1)%n]] += 1.0/Math.max(1, bestLength);
+			}
+			for (int i = 0; i < n*n; i++) {
+				pheromone[i] = Math.min(max, Math.max(min, pheromone[i]));
+			}
+		}
+		System.out.println(String.format("MAX-MIN Ant System stopped after %d iterations", iterations));
+		return bestRoute;
+	}
+
+	/**
+	 *
+	 * @param max The upper pheromone bound
+	 * @return The lower pheromone bound that gives a converged ant a PBEST chance of building the best tour
+	 */
+	private double minimum(double max) {
+		if (n < 2) {
+			return max;
+		}
+		double root = Math.pow(PBEST, 1.0/n);
+		//the average number of sensors an ant chooses between at each step
+		double average = Math.max(2.0, Math.min(CANDIDATES, n)/2.0);
+		return Math.min(max, max*(1-root)/((average-1)*root));
+	}
+}
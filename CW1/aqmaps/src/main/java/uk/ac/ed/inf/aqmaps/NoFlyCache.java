@@ -0,0 +1,176 @@
+package uk.ac.ed.inf.aqmaps;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+
+/**
+ *
+ * Cache of the last no-fly-zones downloaded from the server, held in memory and optionally saved to a binary file, along with the validators
+ * the server sent with them (its ETag and Last-Modified headers) and a hash of the GeoJson they were parsed from.<br>
+ * The validators let the Client ask the server to only send the GeoJson if it has changed, and the hash lets it skip parsing a GeoJson that is
+ * the same as last time even when the server sends it anyway. Either way the same list of zones is handed back, so Pathers given the zones they
+ * already have can skip rebuilding their geometry.
+ *
+ * @author Yannik Nelson
+ * @see Client
+ */
+class NoFlyCache {
+
+	//marks the start of a cache file and the version of its layout
+	private static final int MAGIC = 0x4151465A;
+	private static final int VERSION = 1;
+
+	private final Path cacheFile;
+	private String eTag = "";
+	private String lastModified = "";
+	private long hash = 0;
+	private ArrayList<ArrayList<Location>> zones;
+
+	/**
+	 * Creates a cache that is only held in memory
+	 */
+	NoFlyCache() {
+		this.cacheFile = null;
+	}
+
+	/**
+	 * Loads the zones saved in the cache file, if there are any
+	 *
+	 * @param cacheFile The file the zones are saved in
+	 */
+	NoFlyCache(Path cacheFile) {
+		this.cacheFile = cacheFile;
+		if (Files.exists(cacheFile)) {
+			load();
+		}
+	}
+
+	/**
+	 *
+	 * @return The cached zones, or null if there aren't any
+	 */
+	synchronized ArrayList<ArrayList<Location>> getZones() {
+		return zones;
+	}
+
+	/**
+	 *
+	 * @return The ETag the server sent with the cached zones, empty if it didn't send one
+	 */
+	synchronized String getETag() {
+		return eTag;
+	}
+
+	/**
+	 *
+	 * @return The Last-Modified date the server sent with the cached zones, empty if it didn't send one
+	 */
+	synchronized String getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 *
+	 * @return The hash of the GeoJson the cached zones were parsed from
+	 */
+	synchronized long getHash() {
+		return hash;
+	}
+
+	/**
+	 *
+	 * Replaces the cached zones and saves them to the cache file
+	 *
+	 * @param eTag The ETag the server sent with the zones, empty if it didn't send one
+	 * @param lastModified The Last-Modified date the server sent with the zones, empty if it didn't send one
+	 * @param hash The hash of the GeoJson the zones were parsed from
+	 * @param zones The zones
+	 */
+	synchronized void update(String eTag, String lastModified, long hash, ArrayList<ArrayList<Location>> zones) {
+		this.eTag = eTag;
+		this.lastModified = lastModified;
+		this.hash = hash;
+		this.zones = zones;
+		if (cacheFile != null) {
+			save();
+		}
+	}
+
+	/**
+	 *
+	 * @param json A GeoJson
+	 * @return The hash of the GeoJson
+	 */
+	static long hashOf(String json) {
+		long h = 17;
+		for (int i = 0; i < json.length(); i++) {
+			h = ForwardingPather.mix(h, json.charAt(i));
+		}
+		return h;
+	}
+
+	/**
+	 * Reads the cache file, leaving the cache empty if it can't be read or isn't a cache file
+	 */
+	private void load() {
+		try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				System.out.println("No-fly-zone cache is not in the expected format, ignoring it");
+				return;
+			}
+			var tag = in.readUTF();
+			var modified = in.readUTF();
+			var h = in.readLong();
+			int count = in.readInt();
+			var loaded = new ArrayList<ArrayList<Location>>(count);
+			for (int i = 0; i < count; i++) {
+				int points = in.readInt();
+				var zone = new ArrayList<Location>(points);
+				for (int j = 0; j < points; j++) {
+					zone.add(new Node(in.readDouble(), in.readDouble()));
+				}
+				loaded.add(zone);
+			}
+			this.eTag = tag;
+			this.lastModified = modified;
+			this.hash = h;
+			this.zones = loaded;
+		} catch (IOException e) {
+			System.out.println("Failed to read the no-fly-zone cache, ignoring it");
+		}
+	}
+
+	/**
+	 * Writes the cache to a temporary file and moves it over the cache file, so a run stopped mid write never leaves a broken cache
+	 */
+	private void save() {
+		var temp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+		try {
+			try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeUTF(eTag);
+				out.writeUTF(lastModified);
+				out.writeLong(hash);
+				out.writeInt(zones.size());
+				for (var zone: zones) {
+					out.writeInt(zone.size());
+					for (var l: zone) {
+						out.writeDouble(l.longitude());
+						out.writeDouble(l.latitude());
+					}
+				}
+			}
+			Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			System.out.println("Failed to save the no-fly-zone cache");
+		}
+	}
+}
@@ -9,15 +9,15 @@ package uk.ac.ed.inf.aqmaps;
  */
 public class Node implements Location {
 	
-	Double longitude;
-	Double latitude;
+	final double longitude;
+	final double latitude;
 	
 	/**
 	 * 
 	 * @param location The MapBox Point associated with the location of interest for this Node.
 	 * @see com.mapbox.geojson.Point
 	 */
-	Node(Double longitude, Double latitude) {
+	Node(double longitude, double latitude) {
 		this.longitude = longitude;
 		this.latitude = latitude;
 	}
@@ -35,14 +35,14 @@ public class Node implements Location {
 	/**
 	 * @return the longitude location.
 	 */
-	public Double longitude() {
+	public double longitude() {
 		return this.longitude;
 	}
 
 	/**
 	 * @return the latitude of the location
 	 */
-	public Double latitude() {
+	public double latitude() {
 		return this.latitude;
 	}
 	
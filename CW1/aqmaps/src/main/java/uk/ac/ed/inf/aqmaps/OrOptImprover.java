@@ -0,0 +1,94 @@
+package uk.ac.ed.inf.aqmaps;
+
+/**
+ * 
+ * Or-Opt local search, moves short segments of the tour to between two other locations without reversing them.<br>
+ * As no edge changes the direction it's flown in, the change in cost of each move only depends on the three removed and three added edges
+ * and is found in constant time, which keeps it safe to use on asymmetric costs.
+ * 
+ * @author Yannik Nelson
+ * @see TourImprover
+ */
+class OrOptImprover implements TourImprover {
+	
+	//the longest segment that will be moved
+	private final int maxSegment;
+	
+	OrOptImprover() {
+		this(3);
+	}
+	
+	/**
+	 * 
+	 * @param maxSegment The longest segment that will be moved
+	 */
+	OrOptImprover(int maxSegment) {
+		this.maxSegment = maxSegment;
+	}
+
+	@Override
+	public void improve(int[] tour, int[] costs, int n) {
+		boolean better = true;
+		//keep trying to move every segment until no move improves the tour
+		while (better) {
+			better = false;
+			search:
+			for (int length = 1; length <= maxSegment && length <= n-3; length++) {
+				for (int i = 0; i < n; i++) {
+					//the segment runs from position i for length locations, prev and next are the locations either side of it
+					int first = tour[i];
+					int last = tour[(i+length-1)%n];
+					int prev = tour[(i-1+n)%n];
+					int next = tour[(i+length)%n];
+					//the cost saved by taking the segment out and joining prev straight to next
+					int removed = costs[prev*n+first] + costs[last*n+next] - costs[prev*n+next];
+					//try putting the segment between every pair of consecutive locations outside of it
+					for (int k = (i+length)%n; k != (i-1+n)%n; k = (k+1)%n) {
+						int x = tour[k];
+						int y = tour[(k+1)%n];
+						int added = costs[x*n+first] + costs[last*n+y] - costs[x*n+y];
+						if (added < removed) {
+							move(tour, n, i, length, k);
+							better = true;
+							break search;
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Moves the segment to between the location at position k and the one after it
+	 * 
+	 * @param tour The tour
+	 * @param n The number of locations in the tour
+	 * @param i The position of the start of the segment
+	 * @param length The length of the segment
+	 * @param k The position of the location the segment will follow
+	 */
+	private static void move(int[] tour, int n, int i, int length, int k) {
+		var segment = new int[length];
+		for (int m = 0; m < length; m++) {
+			segment[m] = tour[(i+m)%n];
+		}
+		//rebuild the tour starting just after the segment, dropping the segment in after the location at position k
+		var moved = new int[n];
+		int at = 0;
+		for (int p = (i+length)%n; p != i; p = (p+1)%n) {
+			moved[at++] = tour[p];
+			if (p == k) {
+				for (int s: segment) {
+					moved[at++] = s;
+				}
+			}
+		}
+		System.arraycopy(moved, 0, tour, 0, n);
+	}
+
+	@Override
+	public String getName() {
+		return "Or-Opt";
+	}
+
+}
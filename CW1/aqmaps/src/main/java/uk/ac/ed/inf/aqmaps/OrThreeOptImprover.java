@@ -0,0 +1,68 @@
+package uk.ac.ed.inf.aqmaps;
+
+/**
+ * 
+ * Reversal free 3-Opt local search (or-3opt), removes three edges and swaps the order of the two segments between them.<br>
+ * Neither segment is reversed so every edge is still flown in the same direction, and the change in cost of each move only depends
+ * on the three removed and three added edges, which keeps it safe to use on asymmetric costs.
+ * 
+ * @author Yannik Nelson
+ * @see TourImprover
+ */
+class OrThreeOptImprover implements TourImprover {
+
+	@Override
+	public void improve(int[] tour, int[] costs, int n) {
+		if (n < 4) {
+			return;
+		}
+		boolean better = true;
+		//keep trying every combination of three edges until no swap improves the tour
+		while (better) {
+			better = false;
+			search:
+			for (int i = 0; i < n-2; i++) {
+				//the tour runs a -> [b .. c] -> [d .. e] -> f
+				int a = tour[i];
+				int b = tour[i+1];
+				for (int j = i+1; j < n-1; j++) {
+					int c = tour[j];
+					int d = tour[j+1];
+					//the part of the change that doesn't depend on where the second segment ends
+					int partial = costs[a*n+d] - costs[a*n+b] - costs[c*n+d];
+					for (int k = j+1; k < n; k++) {
+						int e = tour[k];
+						int f = tour[(k+1)%n];
+						//swapping the segments gives a -> [d .. e] -> [b .. c] -> f
+						if (partial + costs[e*n+b] + costs[c*n+f] - costs[e*n+f] < 0) {
+							swap(tour, i, j, k);
+							better = true;
+							break search;
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Swaps the segment after position i up to position j with the segment after position j up to position k
+	 * 
+	 * @param tour The tour
+	 * @param i The position before the first segment
+	 * @param j The position of the end of the first segment
+	 * @param k The position of the end of the second segment
+	 */
+	private static void swap(int[] tour, int i, int j, int k) {
+		var first = new int[j-i];
+		System.arraycopy(tour, i+1, first, 0, j-i);
+		System.arraycopy(tour, j+1, tour, i+1, k-j);
+		System.arraycopy(first, 0, tour, i+1+k-j, j-i);
+	}
+
+	@Override
+	public String getName() {
+		return "Or-3Opt";
+	}
+
+}
@@ -0,0 +1,265 @@
+package uk.ac.ed.inf.aqmaps;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ *
+ * Step budget aware variant of TSPSolution for days where the drone can't visit every sensor and get home within its step limit.<br>
+ * The full tour is found as usual, and if its estimated cost fits the budget it's returned unchanged. Otherwise the orienteering problem is solved
+ * directly: the sensors that save the most steps for the least value are dropped until the tour fits, then dropped sensors are inserted back
+ * wherever there's room for them, with the local search stages run on the remaining tour in between to free up more steps.<br>
+ * Every sensor is worth the same by default. With weighting on, sensors with a low battery or a missing reading are worth more, so they're kept in preference to the others.
+ *
+ * @author Yannik Nelson
+ * @see TSPSolution
+ */
+class OrienteeringSolution extends TSPSolution {
+
+	//the most steps the drone can take
+	private static final int MAXSTEPS = 150;
+	//the battery level below which a sensor needs attention
+	private static final double LOWBATTERY = 10.0;
+	//the value of a sensor that needs attention when weighting is on
+	private static final double ATTENTION = 2.0;
+	//steps held back from the budget to cover the difference between the estimated and the flown paths
+	private Integer margin = 10;
+	private Boolean weighted = false;
+
+	/**
+	 * Creates a solution that uses all of the available processors
+	 *
+	 * @param p The Pather used to find the paths between the sensors
+	 * @param g The random number generator used by the Ant Colony Optimisation
+	 */
+	OrienteeringSolution(Pather p, Random g) {
+		super(p, g);
+	}
+
+	/**
+	 *
+	 * @param p The Pather used to find the paths between the sensors, it must allow concurrent searches
+	 * @param g The random number generator used by the Ant Colony Optimisation
+	 * @param threads The number of threads to use
+	 */
+	OrienteeringSolution(Pather p, Random g, Integer threads) {
+		super(p, g, threads);
+	}
+
+	/**
+	 *
+	 * @param p The Pather used to find the paths between the sensors, it must allow concurrent searches
+	 * @param g The random number generator used by the Ant Colony Optimisation
+	 * @param workers The pool to run on, shared with other solutions
+	 */
+	OrienteeringSolution(Pather p, Random g, ForkJoinPool workers) {
+		super(p, g, workers);
+	}
+
+	/**
+	 *
+	 * @param weighted Boolean representing if sensors with a low battery or a missing reading should be worth more than the others
+	 */
+	void setWeighted(Boolean weighted) {
+		this.weighted = weighted;
+	}
+
+	/**
+	 *
+	 * @param margin The number of steps held back from the budget to cover the difference between the estimated and the flown paths
+	 */
+	void setMargin(Integer margin) {
+		this.margin = margin;
+	}
+
+	@Override
+	public ArrayList<Sensor> solve(ArrayList<Sensor> sensors, Location start) {
+		var order = super.solve(sensors, start);
+		//the full tour as indices into the connection matrix, starting at the start
+		var tour = new ArrayList<Integer>();
+		for (var s: order) {
+			tour.add(indexOf(sensors, s));
+		}
+		int limit = MAXSTEPS - margin;
+		if (estimate(tour) <= limit) {
+			return order;
+		}
+		var value = new double[n];
+		for (int i = 0; i < n; i++) {
+			value[i] = weight(sensors.get(i));
+		}
+		var dropped = new ArrayList<Integer>();
+		//keep dropping, improving and refilling until a round doesn't change the tour
+		var changed = true;
+		while (changed) {
+			changed = false;
+			while (estimate(tour) > limit) {
+				drop(tour, dropped, value);
+				changed = true;
+			}
+			improve(tour);
+			if (fill(tour, dropped, value, limit)) {
+				changed = true;
+			}
+		}
+		System.out.println(String.format("Orienteering plan visits %d of %d sensors, estimated %d steps", tour.size()-1, n-1, estimate(tour)));
+		var result = new ArrayList<Sensor>();
+		for (var i: tour) {
+			result.add(sensors.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * @param tour A tour starting at the start
+	 * @return The estimated number of steps to fly the tour and return to the start, the connection costs are one more than the steps of each path
+	 */
+	private int estimate(ArrayList<Integer> tour) {
+		int total = 0;
+		for (int i = 0; i < tour.size(); i++) {
+			total += connectionMatrix[tour.get(i)*n + tour.get((i+1)%tour.size())] - 1;
+		}
+		return total;
+	}
+
+	/**
+	 *
+	 * @param tour A tour starting at the start
+	 * @param i A position in the tour other than the start
+	 * @return The steps saved by skipping the sensor at that position
+	 */
+	private int saving(ArrayList<Integer> tour, int i) {
+		int previous = tour.get(i-1);
+		int current = tour.get(i);
+		int next = tour.get((i+1)%tour.size());
+		return connectionMatrix[previous*n+current] + connectionMatrix[current*n+next] - connectionMatrix[previous*n+next] - 1;
+	}
+
+	/**
+	 *
+	 * Drops the sensor that saves the most steps for its value
+	 *
+	 * @param tour A tour starting at the start
+	 * @param dropped The sensors dropped so far
+	 * @param value The value of each sensor
+	 */
+	private void drop(ArrayList<Integer> tour, ArrayList<Integer> dropped, double[] value) {
+		int worst = 1;
+		double worstRatio = Double.NEGATIVE_INFINITY;
+		for (int i = 1; i < tour.size(); i++) {
+			double ratio = saving(tour, i)/value[tour.get(i)];
+			if (ratio > worstRatio) {
+				worstRatio = ratio;
+				worst = i;
+			}
+		}
+		dropped.add(tour.remove(worst));
+	}
+
+	/**
+	 *
+	 * Inserts dropped sensors back into the tour while any of them fit, choosing the most value for the fewest extra steps each time
+	 *
+	 * @param tour A tour starting at the start
+	 * @param dropped The sensors dropped so far
+	 * @param value The value of each sensor
+	 * @param limit The most steps the tour may take
+	 * @return Boolean representing if any sensors were inserted
+	 */
+	private boolean fill(ArrayList<Integer> tour, ArrayList<Integer> dropped, double[] value, int limit) {
+		var inserted = false;
+		while (true) {
+			int cost = estimate(tour);
+			int bestSensor = -1;
+			int bestPosition = -1;
+			double bestRatio = Double.NEGATIVE_INFINITY;
+			for (int d = 0; d < dropped.size(); d++) {
+				int s = dropped.get(d);
+				for (int i = 1; i <= tour.size(); i++) {
+					int previous = tour.get(i-1);
+					int next = tour.get(i%tour.size());
+					int extra = connectionMatrix[previous*n+s] + connectionMatrix[s*n+next] - connectionMatrix[previous*n+next] - 1;
+					if (cost + extra > limit) {
+						continue;
+					}
+					double ratio = value[s]/Math.max(1, extra);
+					if (ratio > bestRatio) {
+						bestRatio = ratio;
+						bestSensor = d;
+						bestPosition = i;
+					}
+				}
+			}
+			if (bestSensor == -1) {
+				return inserted;
+			}
+			tour.add(bestPosition, dropped.remove(bestSensor));
+			inserted = true;
+		}
+	}
+
+	/**
+	 *
+	 * Runs the same local search stages as the full tour on the tour through the connection matrix of just the sensors it visits, keeping the start first
+	 *
+	 * @param tour A tour starting at the start
+	 */
+	private void improve(ArrayList<Integer> tour) {
+		int m = tour.size();
+		if (m < 4) {
+			return;
+		}
+		var costs = new int[m*m];
+		for (int i = 0; i < m; i++) {
+			for (int j = 0; j < m; j++) {
+				costs[i*m+j] = connectionMatrix[tour.get(i)*n + tour.get(j)];
+			}
+		}
+		var order = new int[m];
+		for (int i = 0; i < m; i++) {
+			order[i] = i;
+		}
+		for (var improver: improvers) {
+			improver.improve(order, costs, m);
+		}
+		var start = 0;
+		for (int i = 0; i < m; i++) {
+			if (order[i] == 0) {
+				start = i;
+			}
+		}
+		var improved = new ArrayList<Integer>();
+		for (int i = 0; i < m; i++) {
+			improved.add(tour.get(order[(start+i)%m]));
+		}
+		tour.clear();
+		tour.addAll(improved);
+	}
+
+	/**
+	 *
+	 * @param sensor A sensor
+	 * @return The value of visiting the sensor
+	 */
+	private double weight(Sensor sensor) {
+		if (!weighted) {
+			return 1.0;
+		}
+		var reading = sensor.getReading();
+		if (sensor.getBattery() < LOWBATTERY || reading == null || reading.equals("null") || reading.equals("NaN")) {
+			return ATTENTION;
+		}
+		return 1.0;
+	}
+
+	private static int indexOf(ArrayList<Sensor> sensors, Sensor sensor) {
+		for (int i = 0; i < sensors.size(); i++) {
+			if (sensors.get(i) == sensor) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
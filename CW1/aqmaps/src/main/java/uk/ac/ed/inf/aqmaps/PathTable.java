@@ -0,0 +1,246 @@
+package uk.ac.ed.inf.aqmaps;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ *
+ * Read only table of the precomputed paths between every pair of a fixed set of sites, stored in a file that is memory mapped when opened.<br>
+ * The file holds a header, the coordinates of every site, an n by n matrix of path lengths, an n by n matrix of offsets into the step
+ * list and finally every step of every path, so any length or path can be looked up by index without reading the rest of the file.
+ *
+ * @author Yannik Nelson
+ * @see TablePather
+ */
+class PathTable {
+
+	//marks the start of a table file and the version of its layout
+	private static final int MAGIC = 0x41515054;
+	private static final int VERSION = 2;
+	//sizes in bytes of the parts of the file
+	private static final int HEADER = 48;
+	private static final int SITE = 16;
+	private static final int STEP = 20;
+
+	private final MappedByteBuffer buffer;
+	private final int n;
+	private final double tolerance;
+	private final double stepSize;
+	private final double lattice;
+	private final long geometry;
+	//open addressing index from the hash of a site's coordinates to its index, -1 marks an empty slot
+	//sites whose hashes collide probe on to the next slot rather than replacing each other
+	private final int[] index;
+
+	/**
+	 *
+	 * @param buffer The mapped contents of a table file
+	 */
+	private PathTable(MappedByteBuffer buffer) {
+		this.buffer = buffer;
+		this.n = buffer.getInt(8);
+		this.tolerance = buffer.getDouble(16);
+		this.stepSize = buffer.getDouble(24);
+		this.geometry = buffer.getLong(32);
+		this.lattice = buffer.getDouble(40);
+		this.index = new int[Integer.highestOneBit(Math.max(n, 4) * 2 - 1) << 1];
+		Arrays.fill(index, -1);
+		for (int i = 0; i < n; i++) {
+			int slot = slot(longitude(i), latitude(i));
+			while (index[slot] >= 0) {
+				slot = (slot + 1) & (index.length - 1);
+			}
+			index[slot] = i;
+		}
+	}
+
+	/**
+	 *
+	 * Memory maps a table file
+	 *
+	 * @param file The table file
+	 * @return The table held in the file
+	 * @throws IOException If the file can't be read or isn't a table file
+	 */
+	static PathTable open(Path file) throws IOException {
+		try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			//the mapping stays valid after the channel is closed
+			var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.limit() < HEADER || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+				throw new IOException("Not a path table file: " + file);
+			}
+			return new PathTable(buffer);
+		}
+	}
+
+	/**
+	 *
+	 * Writes a table file holding the passed in paths
+	 *
+	 * @param file The file to write, replacing it if it exists
+	 * @param sites The sites the paths are between
+	 * @param paths The path from every site to every site, in row major order (the path from site i to site j is at i*n+j).
+	 * The path from a site to itself is never looked up, so it can be empty rather than searched for
+	 * @param tolerance The tolerance the paths were found with
+	 * @param stepSize The step size the paths were found with
+	 * @param lattice The lattice size the paths were found with, 0 if their positions are continuous
+	 * @param geometry The hash of the no-fly-zones and bounds the paths were found with
+	 * @throws IOException If the file can't be written
+	 */
+	static void write(Path file, ArrayList<? extends Location> sites, ArrayList<FlightPath> paths, double tolerance, double stepSize, double lattice, long geometry) throws IOException {
+		int n = sites.size();
+		long steps = 0;
+		for (var p: paths) {
+			steps += p.size();
+		}
+		long size = HEADER + (long) n * SITE + 8L * n * n + steps * STEP;
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Too many paths to fit in a path table");
+		}
+		var buffer = ByteBuffer.allocate((int) size);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(0);
+		buffer.putDouble(tolerance).putDouble(stepSize).putLong(geometry).putDouble(lattice);
+		for (var s: sites) {
+			buffer.putDouble(s.longitude()).putDouble(s.latitude());
+		}
+		//the lengths of the paths followed by where each path starts in the step list
+		for (var p: paths) {
+			buffer.putInt(p.size());
+		}
+		int offset = 0;
+		for (var p: paths) {
+			buffer.putInt(offset);
+			offset += p.size();
+		}
+		for (var p: paths) {
+			for (int k = 0; k < p.size(); k++) {
+				buffer.putDouble(p.longitude(k)).putDouble(p.latitude(k)).putInt(p.heading(k));
+			}
+		}
+		buffer.flip();
+		try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param tolerance The tolerance a path is wanted for
+	 * @param stepSize The step size of the Pather
+	 * @param lattice The lattice size of the Pather
+	 * @param geometry The hash of the no-fly-zones and bounds of the Pather
+	 * @return Boolean representing if the paths in the table are valid for that configuration
+	 */
+	boolean matches(double tolerance, double stepSize, double lattice, long geometry) {
+		return Double.compare(this.tolerance, tolerance) == 0 && Double.compare(this.stepSize, stepSize) == 0
+				&& Double.compare(this.lattice, lattice) == 0 && this.geometry == geometry;
+	}
+
+	/**
+	 * Unmaps the file straight away rather than whenever the buffer is garbage collected, so the file can be replaced on any platform.<br>
+	 * There is no public way to unmap a buffer, so this uses the JDK's own cleaner if it can get it and otherwise leaves the buffer to the
+	 * garbage collector. The table must not be used again once it's closed.
+	 */
+	void close() {
+		try {
+			var unsafeClass = Class.forName("sun.misc.Unsafe");
+			var theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buffer);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			//the buffer is unmapped once it's garbage collected instead
+		}
+	}
+
+	/**
+	 *
+	 * @return The number of sites in the table
+	 */
+	int size() {
+		return n;
+	}
+
+	/**
+	 *
+	 * @param location A Location
+	 * @return The index of the site at exactly the same coordinates as the Location, or -1 if there isn't one
+	 */
+	int indexOf(Location location) {
+		//probe until an empty slot, checking the coordinates of each site in case two sites share a hash
+		for (int slot = slot(location.longitude(), location.latitude()); index[slot] >= 0; slot = (slot + 1) & (index.length - 1)) {
+			int i = index[slot];
+			if (longitude(i) == location.longitude() && latitude(i) == location.latitude()) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 *
+	 * @param i The index of the start site
+	 * @param j The index of the end site
+	 * @return The number of Locations in the path between the sites, including the start
+	 */
+	int cost(int i, int j) {
+		return buffer.getInt(costs() + 4 * (i * n + j));
+	}
+
+	/**
+	 *
+	 * @param i The index of the start site
+	 * @param j The index of the end site
+	 * @return The path between the sites, every position visited with the angle flown to reach it
+	 */
+	FlightPath route(int i, int j) {
+		int length = cost(i, j);
+		int start = steps() + STEP * buffer.getInt(costs() + 4 * n * n + 4 * (i * n + j));
+		var path = new FlightPath(length);
+		for (int k = 0; k < length; k++) {
+			int at = start + STEP * k;
+			path.add(buffer.getDouble(at), buffer.getDouble(at + 8), buffer.getInt(at + 16));
+		}
+		return path;
+	}
+
+	private double longitude(int i) {
+		return buffer.getDouble(HEADER + SITE * i);
+	}
+
+	private double latitude(int i) {
+		return buffer.getDouble(HEADER + SITE * i + 8);
+	}
+
+	/**
+	 * @return The position of the length matrix in the file
+	 */
+	private int costs() {
+		return HEADER + SITE * n;
+	}
+
+	/**
+	 * @return The position of the step list in the file
+	 */
+	private int steps() {
+		return costs() + 8 * n * n;
+	}
+
+	/**
+	 *
+	 * @param lon The longitude of a site
+	 * @param lat The latitude of a site
+	 * @return The slot of the index to start looking for the site from
+	 */
+	private int slot(double lon, double lat) {
+		long h = ForwardingPather.mix(ForwardingPather.mix(17, Double.doubleToLongBits(lon)), Double.doubleToLongBits(lat));
+		return (int) (h ^ (h >>> 32)) & (index.length - 1);
+	}
+}
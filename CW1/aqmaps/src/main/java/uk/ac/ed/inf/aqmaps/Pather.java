@@ -1,16 +1,26 @@
 package uk.ac.ed.inf.aqmaps;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.ArrayList;
-import org.javatuples.Pair;
-
 /**
  * 
- * Standard interface for path findng solutions
+ * Standard interface for path findng solutions<br>
+ * Once set up, path and findDistance must be safe to call from several threads at once so independent searches can run in parallel.
+ * The setters are not expected to be called while a search is running.
  * 
  * @author Yannik Nelson
  *
  */
-interface Pather {
+interface Pather extends Closeable {
+	
+	/**
+	 * Releases any files the Pather holds open, it must not be called while a search is running. Pathers that hold nothing open don't need to override it
+	 * 
+	 * @throws IOException
+	 */
+	@Override
+	default void close() throws IOException {}
 
 	/**
 	 * Sets the areas in the flying area that the drone is to avoid
@@ -26,13 +36,20 @@ interface Pather {
 	 * @param leb leftbound
 	 * @param bb rightbound
 	 */
-	public void setBounds(Double ub, Double lob, Double leb, Double rb);
+	public void setBounds(double ub, double lob, double leb, double rb);
 	
 	/**
 	 * Sets the distance the Pather should make each step
 	 * @param ss
 	 */
-	public void setStepSize(Double ss);
+	public void setStepSize(double ss);
+	
+	/**
+	 * Sets the size of the lattice positions are snapped to, Pathers without a discretised mode ignore it
+	 * 
+	 * @param resolution The lattice size in degrees, or 0 to leave positions continuous
+	 */
+	default void setLatticeResolution(double resolution) {}
 	
 	/**
 	 * Attempts to find the shortest path from the start to the end while avoiding no-fly-zones accepting a final Location within the tolerance of the end Location
@@ -40,9 +57,21 @@ interface Pather {
 	 * @param start The starting Location
 	 * @param end The target Location
 	 * @param tollerance The acceptable distance to the target
-	 * @return A list of every Location visited paired with the angle the drone flew at to reach that location from the last
+	 * @return Every position visited with the angle the drone flew at to reach it from the last
+	 */
+	FlightPath path(Location start, Location end, double tolerance);
+	
+	/**
+	 * Finds the length of the path that would be returned by path, for callers that only need the cost of getting from the start to the end
+	 * 
+	 * @param start The starting Location
+	 * @param end The target Location
+	 * @param tollerance The acceptable distance to the target
+	 * @return The number of Locations in the path, including the start
 	 */
-	ArrayList<Pair<Location, Integer>> path(Location start, Location end, Double tolerance);
+	default Integer pathLength(Location start, Location end, double tolerance) {
+		return path(start, end, tolerance).size();
+	}
 	
 	/**
 	 * Defines a distance function between to Locations
@@ -51,5 +80,5 @@ interface Pather {
 	 * @param p2 Second Location
 	 * @return The distance between the two Locations
 	 */
-	Double findDistance(Location p1, Location p2);
+	double findDistance(Location p1, Location p2);
 }
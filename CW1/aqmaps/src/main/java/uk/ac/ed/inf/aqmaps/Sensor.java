@@ -19,7 +19,7 @@ interface Sensor extends Location{
 	 * 
 	 * @return The battery reading of the Sensor
 	 */
-	Double getBattery();
+	double getBattery();
 	
 	/**
 	 * 
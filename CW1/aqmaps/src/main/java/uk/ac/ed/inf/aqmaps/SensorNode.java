@@ -10,7 +10,7 @@ package uk.ac.ed.inf.aqmaps;
  */
 class SensorNode extends Node implements Sensor {
 	private String what3words;
-	private Double battery;
+	private double battery;
 	private String reading;
 	
 	/**
@@ -20,7 +20,7 @@ class SensorNode extends Node implements Sensor {
 	 * @param battery The battery level of the sensor
 	 * @param reading The reading of the sensor, can be a value, can be "null" or "NaN"
 	 */
-	SensorNode(String what3words, Double longitude, Double latitude, Double battery, String reading) {
+	SensorNode(String what3words, double longitude, double latitude, double battery, String reading) {
 		super(longitude, latitude);
 		this.what3words = what3words;
 		this.battery = battery;
@@ -42,7 +42,7 @@ class SensorNode extends Node implements Sensor {
 	/**
 	 * @return the battery
 	 */
-	public Double getBattery() {
+	public double getBattery() {
 		return battery;
 	}
 
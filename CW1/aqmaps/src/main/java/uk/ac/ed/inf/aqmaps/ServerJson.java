@@ -0,0 +1,155 @@
+package uk.ac.ed.inf.aqmaps;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.Point;
+import com.mapbox.geojson.Polygon;
+
+/**
+ *
+ * Decoders for the files the server holds, shared by every ClientWrapper that reads the server's tree, whether over HTTP or from disk.<br>
+ * The air quality data and What3Words details are decoded as they stream in, without building the whole file as a String or a tree of JsonElements.
+ *
+ * @author Yannik Nelson
+ * @see Client
+ * @see LocalClient
+ */
+final class ServerJson {
+
+	/**
+	 * Receives each sensor entry of the air quality data as it's read
+	 */
+	interface EntryHandler {
+		void entry(String what3words, double battery, String reading) throws IOException, InterruptedException;
+	}
+
+	private ServerJson() {
+	}
+
+	/**
+	 *
+	 * @param geoJson The no-fly-zones GeoJson
+	 * @return The outer boundary of each no-fly-zone
+	 */
+	static ArrayList<ArrayList<Location>> noFlyZones(String geoJson) {
+		var noFlyZones = new ArrayList<ArrayList<Location>>();
+		for (var f: FeatureCollection.fromJson(geoJson).features()) {
+			ArrayList<Point> t = (ArrayList<Point>) ((Polygon) f.geometry()).outer().coordinates();
+			var z = new ArrayList<Location>();
+			for (var p: t) {
+				z.add(new Node(p.longitude(), p.latitude()));
+			}
+			noFlyZones.add(z);
+		}
+		return noFlyZones;
+	}
+
+	/**
+	 *
+	 * Reads the air quality data of a day, passing each sensor's attributes to the handler as soon as its entry has been read
+	 *
+	 * @param body The air quality data JSON
+	 * @param date The date of the data, for the error messages
+	 * @param handler The handler given each sensor entry in the order they appear in the JSON
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws JsonParseException If the body isn't a list of sensors, as happens when there's no data for the date
+	 */
+	static void airQuality(InputStream body, String date, EntryHandler handler) throws IOException, InterruptedException {
+		try (var reader = reader(body)) {
+			if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+				throw new JsonParseException("No air quality data for " + date);
+			}
+			reader.beginArray();
+			while (reader.hasNext()) {
+				String words = null;
+				Double battery = null;
+				String reading = null;
+				reader.beginObject();
+				while (reader.hasNext()) {
+					switch (reader.nextName()) {
+					case "location":
+						words = reader.nextString();
+						break;
+					case "battery":
+						battery = reader.nextDouble();
+						break;
+					case "reading":
+						reading = reader.nextString();
+						break;
+					default:
+						reader.skipValue();
+					}
+				}
+				reader.endObject();
+				if (words == null || battery == null || reading == null) {
+					throw new JsonParseException("Incomplete sensor in the air quality data for " + date);
+				}
+				handler.entry(words, battery, reading);
+			}
+			reader.endArray();
+		}
+	}
+
+	/**
+	 *
+	 * Reads the coordinates out of the details JSON of a What3Words location as it streams in, skipping everything else
+	 *
+	 * @param body The details JSON of a What3Words location
+	 * @return Point at the coordinates in the details
+	 * @throws IOException
+	 */
+	static Location coordinates(InputStream body) throws IOException {
+		try (var reader = reader(body)) {
+			Double lat = null;
+			Double lng = null;
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if (!reader.nextName().equals("coordinates")) {
+					reader.skipValue();
+					continue;
+				}
+				reader.beginObject();
+				while (reader.hasNext()) {
+					switch (reader.nextName()) {
+					case "lat":
+						lat = reader.nextDouble();
+						break;
+					case "lng":
+						lng = reader.nextDouble();
+						break;
+					default:
+						reader.skipValue();
+					}
+				}
+				reader.endObject();
+				//nothing after the coordinates is needed
+				break;
+			}
+			if (lat == null || lng == null) {
+				throw new JsonParseException("No coordinates in the What3Words details");
+			}
+			return new Node(lng, lat);
+		}
+	}
+
+	/**
+	 *
+	 * @param body The body of a file
+	 * @return A lenient JsonReader decoding the body as UTF-8, so a page that isn't JSON (such as the server's 404 page) reads as a single value rather than failing
+	 */
+	private static JsonReader reader(InputStream body) {
+		var reader = new JsonReader(new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8)));
+		reader.setLenient(true);
+		return reader;
+	}
+}
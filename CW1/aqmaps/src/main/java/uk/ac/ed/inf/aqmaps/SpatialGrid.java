@@ -0,0 +1,105 @@
+package uk.ac.ed.inf.aqmaps;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ *
+ * Grid bucketed spatial index of Locations, used to quickly answer whether a Location is close to any Location that has already been added.<br>
+ * Each Location is stored in the square cell of the grid it falls in, so a proximity check only has to look at the cells around the point
+ * instead of every stored Location.
+ *
+ * @author Yannik Nelson
+ * @see Location
+ */
+class SpatialGrid {
+
+	private final double cellSize;
+	//mapping from the packed coordinates of a cell to the Locations that fall within it
+	private final HashMap<Long, ArrayList<Location>> cells = new HashMap<>();
+
+	/**
+	 *
+	 * @param cellSize The width and height of each cell of the grid in degrees
+	 */
+	SpatialGrid(double cellSize) {
+		this.cellSize = cellSize;
+	}
+
+	/**
+	 *
+	 * Adds a Location to the cell it falls within
+	 *
+	 * @param location The Location to add
+	 */
+	void add(Location location) {
+		cells.computeIfAbsent(key(cell(location.longitude()), cell(location.latitude())), k -> new ArrayList<Location>()).add(location);
+	}
+
+	/**
+	 *
+	 * Checks if any of the added Locations are strictly closer than the radius to the passed in Location.<br>
+	 * When the radius is no bigger than the cell size only the 9 cells around the Location are checked.
+	 *
+	 * @param location The Location to check around
+	 * @param radius The distance to check within
+	 * @return Boolean representing if an added Location is within the radius of the passed in Location
+	 */
+	boolean anyWithin(Location location, double radius) {
+		return anyWithin(location.longitude(), location.latitude(), radius);
+	}
+
+	/**
+	 *
+	 * Checks if any of the added Locations are strictly closer than the radius to the passed in coordinates, without needing a Location to be built for them
+	 *
+	 * @param longitude The longitude to check around
+	 * @param latitude The latitude to check around
+	 * @param radius The distance to check within
+	 * @return Boolean representing if an added Location is within the radius of the passed in coordinates
+	 */
+	boolean anyWithin(double longitude, double latitude, double radius) {
+		long x = cell(longitude);
+		long y = cell(latitude);
+		//the number of cells either side of the Location's cell that could hold a point within the radius
+		long reach = (long) Math.ceil(radius/cellSize);
+		for (long i = x - reach; i <= x + reach; i++) {
+			for (long j = y - reach; j <= y + reach; j++) {
+				var bucket = cells.get(key(i, j));
+				if (bucket == null) {
+					continue;
+				}
+				for (var p: bucket) {
+					//compare the squared distances to avoid taking a square root for every point
+					double dlon = p.longitude() - longitude;
+					double dlat = p.latitude() - latitude;
+					if (dlon*dlon + dlat*dlat < radius*radius) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 *
+	 * @param coordinate A longitude or latitude
+	 * @return The index of the row or column of cells the coordinate falls within
+	 */
+	private long cell(double coordinate) {
+		return (long) Math.floor(coordinate/cellSize);
+	}
+
+	/**
+	 *
+	 * Packs the column and row of a cell into a single key
+	 *
+	 * @param x The column of the cell
+	 * @param y The row of the cell
+	 * @return The key of the cell
+	 */
+	private static Long key(long x, long y) {
+		return (x << 32) ^ (y & 0xffffffffL);
+	}
+}
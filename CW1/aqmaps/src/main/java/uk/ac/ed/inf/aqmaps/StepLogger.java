@@ -1,11 +1,7 @@
 package uk.ac.ed.inf.aqmaps;
 
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-
-import org.javatuples.Pair;
 
 /**
  * 
@@ -16,9 +12,11 @@ import org.javatuples.Pair;
  */
 class StepLogger implements Logger {
 	
-	//Initialise the steps text variable and line count
-	String outputLog = "";
+	//Initialise the steps text variable and line count, the log is only ever appended to so it's built in place rather than copied for every line
+	StringBuilder outputLog = new StringBuilder();
 	Integer linenum = 1;
+	//the number of characters of the log written to the file at a time
+	static final int CHUNK = 4096;
 	
 	Pather pather;
 	
@@ -26,36 +24,34 @@ class StepLogger implements Logger {
 		this.pather = p;
 	}
 	
-	public Integer LogSteps(ArrayList<Pair<Location, Integer>> route, Sensor sensor) {
+	public Integer LogSteps(FlightPath route, Sensor sensor) {
 		//run through the list of steps (ignoring the first Location as we care about moving from one Location to the next and the first Location has no previous one
 		for (Integer j = 1; j < route.size(); j++) {
-			//get the current Location and the locateion we were at prior
-			var from = route.get(j-1).getValue0();
-			var to = route.get(j).getValue0();
-			//add the location data and angle travelled to the the outputlog
-			var ln = Integer.toString(linenum) + "," + Double.toString(from.longitude()) + "," + Double.toString(from.latitude()) + "," + Integer.toString(route.get(j).getValue1()) + "," + Double.toString(to.longitude()) + "," + Double.toString(to.latitude()) + ",";
+			//add the location we were at prior, the angle travelled and the current location to the the outputlog, the coordinates are formatted straight into the log
+			outputLog.append(linenum.intValue()).append(',')
+					.append(route.longitude(j-1)).append(',').append(route.latitude(j-1)).append(',')
+					.append(route.heading(j)).append(',')
+					.append(route.longitude(j)).append(',').append(route.latitude(j)).append(',');
 			//if we're not at the end of the route then we don't need to ceck for a Sensor location and simply add 'null'
 			if (j == route.size()-1) {
-				//if we're at the end by the sensor has no what3words value then that sensor is the start position and we have returned, add 'null' to the line, add the line to the outputLog and return success
+				//if we're at the end by the sensor has no what3words value then that sensor is the start position and we have returned, add 'null' to the line and return success
 				//note this also means we don't have a linebreak on the last line of the log
 				if (sensor.getWhat3Words().equals("")) {
-					ln += "null";
-					outputLog += ln;
+					outputLog.append("null");
 					linenum++;
 					return -1;
 				}
 				//if we're at the end and we're in range of the desired sensor then add its what3words to the line otherwise add 'null'
-				if (pather.findDistance(route.get(route.size()-1).getValue0(), sensor) < 0.0002) {
-					ln += sensor.getWhat3Words();
+				if (pather.findDistance(route.last(), sensor) < 0.0002) {
+					outputLog.append(sensor.getWhat3Words());
 				} else {
-					ln += "null";
+					outputLog.append("null");
 				}
 			} else {
-				ln += "null";
+				outputLog.append("null");
 			}
-			//add a line break to the line and add it the the full log, increment the line count
-			ln += "\n";
-			outputLog += ln;
+			//end the line with a line break, increment the line count
+			outputLog.append('\n');
 			linenum++;
 			// if the next line would be step 151 we've reached our step limit, return the index of the last valid step in this route
 			if (linenum == 151) {
@@ -71,9 +67,14 @@ class StepLogger implements Logger {
 		System.out.println(String.format("Final Step Count: %s", linenum-1));
 		//setup the path to save the file relative to where the jar is being run
 		var pathToOutput = Paths.get(System.getProperty("user.dir"), filePath);
-		try {
-			//attempt to write the file
-			Files.write(pathToOutput, outputLog.getBytes());
+		//attempt to write the file, a chunk of the log at a time so the whole log is never copied into a String
+		try (var writer = Files.newBufferedWriter(pathToOutput)) {
+			var chunk = new char[CHUNK];
+			for (int start = 0; start < outputLog.length(); start += chunk.length) {
+				int end = Math.min(start + chunk.length, outputLog.length());
+				outputLog.getChars(start, end, chunk, 0);
+				writer.write(chunk, 0, end - start);
+			}
 			System.out.println("Log saved Successfully");
 		} catch (Exception e) {
 			System.out.println("Failed to write Log to the files");
@@ -1,9 +1,14 @@
 package uk.ac.ed.inf.aqmaps;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
 import me.tongfei.progressbar.ProgressBar;
 import me.tongfei.progressbar.ProgressBarBuilder;
@@ -12,20 +17,81 @@ import me.tongfei.progressbar.ProgressBarStyle;
 
 /**
  * 
- * Ant Colony Optimisation and 2-Opt Heuristic hybrid implementation of TSPSolver the interface
+ * Ant Colony Optimisation and 2-Opt Heuristic hybrid implementation of TSPSolver the interface, followed by any further TourImprover stages
  * 
  * @author Yannik Nelson
  * @see TSPSolver
  */
-class TSPSolution implements TSPSolver {
+class TSPSolution implements TSPSolver, AutoCloseable {
 
 	private Pather pather;
-	private Random generator;
-	private HashMap<Sensor, HashMap<Sensor, Integer>> connectionMatrix;
+	protected Random generator;
+	//the number of sensors being solved for and the cost between them, indexed by their position in the sensors list
+	//the cost from sensor i to sensor j is stored at i*n+j
+	protected int n;
+	protected int[] connectionMatrix;
+	//the number of nearest neighbours each sensor tries to connect to in the 2-Opt
+	private static final int NEIGHBOURS = 10;
+	//the number of nearest neighbours each ant chooses between when picking the next sensor
+	protected static final int CANDIDATES = 15;
+	//pool of worker threads used to run the independent path searches in parallel, only shut down on close if this solution created it
+	private ForkJoinPool workers;
+	private boolean ownsWorkers;
+	//local search stages run in order after the 2-Opt, these never reverse part of the tour so they suit the asymmetric costs
+	protected ArrayList<TourImprover> improvers = new ArrayList<>(List.of(new OrOptImprover(), new OrThreeOptImprover()));
 	
+	/**
+	 * Creates a solution that uses all of the available processors
+	 * 
+	 * @param p The Pather used to find the paths between the sensors
+	 * @param g The random number generator used by the Ant Colony Optimisation
+	 */
 	TSPSolution (Pather p, Random g){
+		this(p, g, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * 
+	 * @param p The Pather used to find the paths between the sensors, it must allow concurrent searches
+	 * @param g The random number generator used by the Ant Colony Optimisation
+	 * @param threads The number of threads to use
+	 */
+	TSPSolution (Pather p, Random g, Integer threads){
+		this(p, g, new ForkJoinPool(threads));
+		this.ownsWorkers = true;
+	}
+	
+	/**
+	 * Creates a solution that runs on a pool shared with other solutions, the pool is left running when the solution is closed
+	 * 
+	 * @param p The Pather used to find the paths between the sensors, it must allow concurrent searches
+	 * @param g The random number generator used by the Ant Colony Optimisation
+	 * @param workers The pool to run the path searches and ants on
+	 */
+	TSPSolution (Pather p, Random g, ForkJoinPool workers){
 		this.pather = p;
 		this.generator = g;
+		this.workers = workers;
+		this.ownsWorkers = false;
+	}
+
+	/**
+	 * Replaces the local search stages run after the 2-Opt
+	 * 
+	 * @param improvers The stages to run, in order
+	 */
+	void setImprovers(ArrayList<TourImprover> improvers) {
+		this.improvers = improvers;
+	}
+
+	/**
+	 * Shuts down the worker pool if this solution created it
+	 */
+	@Override
+	public void close() {
+		if (ownsWorkers) {
+			workers.shutdown();
+		}
 	}
 
 	@Override
@@ -33,38 +99,48 @@ class TSPSolution implements TSPSolver {
 		//create The fully connected graph representation required for the Travelling Salesman Solution as precomputing
 		buildConnectionMatrix(sensors);
 		//perform The Ant Colony Optimisation using the precomputed graph and output its (over) estimated length
-		var order = ACOTSP(sensors);
+		var order = ACOTSP();
 		System.out.println(String.format("Estimated Tour Step Cost After Ant Colony: %d", getCost(order)));
 		//perform the 2-Opt heuristic on the order produced by the Ant Colony Optimisation in order to try and fix bad cross overs and output the new estimated length
 		Two_OPT(order);
 		System.out.println(String.format("Estimated Tour Step Cost After 2-OPT: %d", getCost(order)));
+		//run the further local search stages, outputting the new estimated length after each
+		for (var improver: improvers) {
+			improver.improve(order, connectionMatrix, n);
+			System.out.println(String.format("Estimated Tour Step Cost After %s: %d", improver.getName(), getCost(order)));
+		}
 		//recenter the order so that the first 'Sensor' is the start position and return the ordering
-		var startIndex = order.indexOf(start);
+		var startIndex = 0;
+		for (int i = 0; i < n; i++) {
+			if (sensors.get(order[i]) == start) {
+				startIndex = i;
+			}
+		}
 		var centeredOrder = new ArrayList<Sensor>();
-		for (Integer i = 0; i < order.size(); i++) {
-			centeredOrder.add(order.get((startIndex+i)%order.size()));
+		for (int i = 0; i < n; i++) {
+			centeredOrder.add(sensors.get(order[(startIndex+i)%n]));
 		}
 		return centeredOrder;
 	}
 	
 	/**
 	 * 
-	 * Takes in a List of points and find the best distance (+1) between each point and every other point and placing those in a 2D HashMap of sorts
+	 * Takes in a List of points and find the best distance (+1) between each point and every other point and placing those in a flat row major matrix,
+	 * indexed by the position of the sensors in the list<br>
+	 * Every search is independent so they are all run in parallel on the worker pool before the results are gathered into the matrix
 	 * 
 	 * @param destinations ArrayList of Sensors to be visited (includes the starting location as a Sensor)
-	 * @return A Mapping from any Sensor to a Mapping from any other sensor to the best number of steps between them + 1
 	 */
 	private void buildConnectionMatrix (ArrayList<Sensor> destinations) {
 		
-		//Initialise each row (or row of the 2D HashMap)
-		connectionMatrix = new HashMap<>();
-		for (var s: destinations) {
-			connectionMatrix.put(s, new HashMap<Sensor, Integer>());
-		}
+		//Initialise the matrix
+		n = destinations.size();
+		connectionMatrix = new int[n*n];
 		//Create a new progress bar
 //		ProgressBarBuilder pbb = new ProgressBarBuilder().setStyle(ProgressBarStyle.ASCII).setUpdateIntervalMillis(1).setInitialMax(destinations.size()*destinations.size()).setTaskName("Building Connections");
 //		try (var pb = pbb.build()){
-			//For every combination of Sensors (where order matters) 
+			//For every combination of Sensors (where order matters) create a search task
+			var searches = new ArrayList<Callable<Integer>>();
 			for (var s1: destinations) {
 				for (var s2: destinations) {
 					//If the sensors are the same (we're on the diagonal of the matrix) store 0
@@ -72,24 +148,33 @@ class TSPSolution implements TSPSolver {
 					//(this is the number of steps +1 as the A* assumes starting exactly at each sensor which will not be the case for the final route, this way allows an extra step to make up the difference)
 					//Note: due to the object avoidance there are some cases where the 'distance' from a to b is not the same as that from b to a, thus the full matrix must be calculated
 					if (s1==s2) {
-						connectionMatrix.get(s1).put(s2, 0);
+						searches.add(() -> 0);
 					} else {
-						connectionMatrix.get(s1).put(s2, pather.path(s1,s2, 0.0002).size());
+						searches.add(() -> pather.pathLength(s1,s2, 0.0002));
 					}
+				}
+			}
+			//run all of the searches and store their results in the matrix in the same order the tasks were created
+			var results = workers.invokeAll(searches);
+			try {
+				for (int i = 0; i < results.size(); i++) {
+					connectionMatrix[i] = results.get(i).get();
 					//update the progress bar
 //					pb.step();
 				}
+			} catch (InterruptedException | ExecutionException e) {
+				throw new IllegalStateException("Failed to build the connection matrix", e);
 			}
 //		}
 //		//Display the connectionLengths Matrix highlighting that it is not a diagonal matrix by putting [] around pairs that would match but don't
 //		System.out.println("Estimated Connection Step Costs:");
-//		for (Sensor s1: destinations) {
-//			for (Sensor s2: destinations) {
+//		for (int i = 0; i < n; i++) {
+//			for (int j = 0; j < n; j++) {
 //				//if the symmetric item in the connection matrix to the one being printed is not the same value, put [] around it to highlight the difference
-//				if (connectionMatrix.get(s1).get(s2) != connectionMatrix.get(s2).get(s1)) {
-//					System.out.print(String.format("[%2d],", connectionMatrix.get(s1).get(s2)));
+//				if (connectionMatrix[i*n+j] != connectionMatrix[j*n+i]) {
+//					System.out.print(String.format("[%2d],", connectionMatrix[i*n+j]));
 //				} else {
-//					System.out.print(String.format(" %2d ,", connectionMatrix.get(s1).get(s2)));
+//					System.out.print(String.format(" %2d ,", connectionMatrix[i*n+j]));
 //				}
 //			}
 //			System.out.println();
@@ -98,116 +183,82 @@ class TSPSolution implements TSPSolver {
 
 	/**
 	 * 
-	 * Convenience function for finding the cost of a path
+	 * Convenience function for finding the cost of a tour (including the return to the first sensor)
 	 * 
-	 * @param connectionMatrix The estimated length of each connection in drone steps
-	 * @param path The path who's cost is desired
+	 * @param path The tour who's cost is desired, as indices into the connection matrix
 	 * @return The estimated cost in drone steps of the path
 	 */
-	private Integer getCost(ArrayList<Sensor> path) {
-		Integer totalLength = 0;
-		for (Integer j = 1; j < path.size(); j++) {
-			totalLength += connectionMatrix.get(path.get(j-1)).get(path.get(j));
+	protected int getCost(int[] path) {
+		int totalLength = 0;
+		for (int j = 1; j < path.length; j++) {
+			totalLength += connectionMatrix[path[j-1]*n + path[j]];
 		}
-		totalLength += connectionMatrix.get(path.get(path.size()-1)).get(path.get(0));
+		totalLength += connectionMatrix[path[path.length-1]*n + path[0]];
 		return totalLength;
 	}
 	
 	/**
-	 * Ant Colony Optimisation Algorithm for the Travelling Salesman Problem
+	 * Ant Colony Optimisation Algorithm for the Travelling Salesman Problem, working on the indices of the sensors in the connection matrix<br>
+	 * The ants of each iteration are built in parallel on the worker pool, then their tours update the pheromones together
 	 * 
-	 * @param connectionMatrix Matrix of distances between nodes
-	 * @param Sensors List of Locations to visit
-	 * @return
+	 * @return The best tour found as indices into the connection matrix
 	 */
-	private ArrayList<Sensor> ACOTSP(ArrayList<Sensor> sensors) {
+	protected int[] ACOTSP() {
 		//Q constant for tour length pheromone update
-		Double Q = 1.0;
+		double Q = 1.0;
 		//pheromone evaporation rate
-		Double evap = 0.1;
+		double evap = 0.1;
 		//initial bestLength and best route
-		var bestRoute = (ArrayList<Sensor>) sensors.clone();
-		Integer bestLength = getCost(bestRoute);
-		//Create and initialise the pheromone map to have a pheromone of 1 on all connecitons
-		var pheromone = new HashMap<Sensor, HashMap<Sensor, Double>>();
-		for (var s1: sensors) {
-			pheromone.put(s1, new HashMap<Sensor, Double>());
-			for (var s2: sensors) {
-				pheromone.get(s1).put(s2, 1.0);
-			}
+		var bestRoute = new int[n];
+		for (int i = 0; i < n; i++) {
+			bestRoute[i] = i;
 		}
+		int bestLength = getCost(bestRoute);
+		//Create and initialise the pheromone matrix to have a pheromone of 1 on all connecitons
+		var pheromone = new double[n*n];
+		Arrays.fill(pheromone, 1.0);
 		
-		//store the number of sensors and the number of ants each iteration for easier use
-		Integer n = sensors.size();
-		Integer k = n;
+		//store the number of ants each iteration for easier use
+		int k = n;
 		
 		//The weight given to the pheromone strength of a connection when choosing the next Sensor
-		Double a = 1.0;
+		double a = 1.0;
 		//The weight given to the length of a connection when choosing the next Sensor
-		Double b = 4.0;
+		double b = 4.0;
+		//the length part of each connection's weighting never changes so it is found once
+		var heuristic = heuristic(b);
+		//the closest sensors to each sensor, the only ones an ant considers unless they've all been visited
+		var candidates = nearestNeighbours(CANDIDATES);
+		//the combined weighting of every connection, updated once per iteration from the pheromones
+		var choice = new double[n*n];
 		
 		//Run the Ant simulation 100 times
-		for (Integer t = 0; t < 100; t++) {
-			//Create a new list of ants, represented as an ArrayLists of sensors the visited sensors in the order they were visited by that ant
-			var ants = new ArrayList<ArrayList<Sensor>>();
-			for (int i = 0; i < k; i++) {
-				//Initialise the ant with an empty list for visited Sensors and a clone of the sensors list as the available Sensors
-				ants.add(new ArrayList<Sensor>());
-				var ant = ants.get(i);
-				//Initialise a clone of the sensors list to be used as a list of the available Sensors for the ant (the sensors the ant hans't visited yet)
-				var possibleNext = (ArrayList<Sensor>) sensors.clone();
-				//Pick a random starting Sensor, add it to the visited list and remove it from the available sensors
-				var firstSensor = sensors.get(generator.nextInt(n));
-				ant.add(firstSensor);
-				possibleNext.remove(firstSensor);
-				//Build the ant's tour probabilistically 
-				while (possibleNext.size() > 0) {
-					//get the current Sensor and sensors still available
-					var current = ant.get(ant.size() - 1);
-					//Find the sum of the path weightings for the available Sensors
-					Double sumWeight = 0.0;
-					for (var s: possibleNext) {
-						sumWeight +=  Math.pow(pheromone.get(current).get(s), a) * Math.pow((1.0/connectionMatrix.get(current).get(s)),b);
-					}
-					//Pick a random value between 0 and 1
-					Double p = generator.nextDouble();
-					Double cumProb = 0.0;
-					var next = possibleNext.get(0);
-					//For each sensor, if the random value chosen is less than or equal to the cumulative probability of available Sensors so far, choose that sensor next
-					//This produces the desired distribution
-					for (var s: possibleNext) {
-						//The probability of next sensor being chosen is it's weighting divided by the sum of the weightings of all the possible next sensors
-						cumProb +=  ((Math.pow(pheromone.get(current).get(s), a) * Math.pow((1.0/connectionMatrix.get(current).get(s)),b))/sumWeight);
-						if (p <= cumProb) {
-							next = s;
-							break;
-						}
-					}
-					//add the next sensors chosen to the visited list and remove it from the available sensors
-					ant.add(next);
-					possibleNext.remove(next);
-				}
+		for (int t = 0; t < 100; t++) {
+			for (int i = 0; i < n*n; i++) {
+				//with a pheromone weight of 1 the power is the pheromone itself
+				choice[i] = (a == 1.0 ? pheromone[i] : Math.pow(pheromone[i], a)) * heuristic[i];
 			}
+			//Create a new list of ants, each represented as the indices of the sensors it visited in the order they were visited
+			var ants = buildAnts(choice, candidates, k);
 			
+			//once every ant is built, reduce their tours into the pheromones in ant order so the result is the same however the ants were scheduled
 			//Apply the evaporation to the pheromones on the connections
-			for (var s1: sensors) {
-				for (var s2: sensors) {
-					pheromone.get(s1).put(s2, pheromone.get(s1).get(s2) * (1-evap));
-				}
+			for (int i = 0; i < n*n; i++) {
+				pheromone[i] *= (1-evap);
 			}
 			//add pheromone to every connection travelled, proportional to the tour lengths of each path that used said connection
 			//this is done by looking at every ant, finding its tour length and then adding Q/(the tour length) to every connection used
 			for (int i = 0; i < k; i++) {
-				var path = ants.get(i);
-				Integer totalLength = getCost(path);
+				var path = ants[i];
+				int totalLength = getCost(path);
 				//if the path currently being looked at is better than the previous best, store it and its length
 				if (totalLength < bestLength) {
 					bestLength = totalLength;
 					bestRoute = path;
 				}
 				
-				for (Integer j = 1; j < path.size(); j++) {
-					pheromone.get(path.get(j-1)).put(path.get(j), pheromone.get(path.get(j-1)).get(path.get(j)) + (Q/totalLength));
+				for (int j = 1; j < n; j++) {
+					pheromone[path[j-1]*n + path[j]] += (Q/totalLength);
 				}
 			}
 		}
@@ -216,46 +267,270 @@ class TSPSolution implements TSPSolver {
 	}
 	
 	/**
-	 * Convenience function for checking if reversing a subsection of a passed in order will improve the path length of the order
 	 * 
-	 * @param connectionMatrix Matrix of distances between nodes
-	 * @param list Current ordering
+	 * @param b The weight given to the length of a connection
+	 * @return (1/length)^b for every connection, in the same layout as the connection matrix, leaving each sensor's own diagonal at 0
+	 */
+	protected double[] heuristic(double b) {
+		var heuristic = new double[n*n];
+		for (int i = 0; i < n*n; i++) {
+			if (connectionMatrix[i] > 0) {
+				heuristic[i] = Math.pow(1.0/connectionMatrix[i], b);
+			}
+		}
+		return heuristic;
+	}
+	
+	/**
+	 * 
+	 * Builds one iteration's ants in parallel on the worker pool<br>
+	 * Every ant gets its own random stream split from a seed drawn from the generator, so the tours only depend on the seed and not on
+	 * the number of threads or the order the ants are built in
+	 * 
+	 * @param choice The combined pheromone and length weighting of each connection
+	 * @param candidates For each sensor the closest other sensors
+	 * @param k The number of ants
+	 * @return The tour of each ant as indices into the connection matrix
+	 */
+	protected int[][] buildAnts(double[] choice, int[][] candidates, int k) {
+		var streams = new SplittableRandom(generator.nextLong());
+		//the ants only read the weightings so they can all be built at once
+		var constructions = new ArrayList<Callable<int[]>>();
+		for (int i = 0; i < k; i++) {
+			var random = streams.split();
+			constructions.add(() -> constructAnt(choice, candidates, random));
+		}
+		var results = workers.invokeAll(constructions);
+		var ants = new int[k][];
+		try {
+			for (int i = 0; i < k; i++) {
+				ants[i] = results.get(i).get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IllegalStateException("Failed to build the ant tours", e);
+		}
+		return ants;
+	}
+	
+	/**
+	 * 
+	 * Builds a single ant's tour probabilistically, choosing each next sensor in proportion to the weighting of the connection to it<br>
+	 * Only the unvisited candidates of the current sensor are considered, falling back to every unvisited sensor once all of its candidates have been visited.
+	 * Only reads the weightings, so any number of ants can be built at once
+	 * 
+	 * @param choice The combined pheromone and length weighting of each connection, in the same layout as the connection matrix
+	 * @param candidates For each sensor the closest other sensors
+	 * @param random The ant's own random number stream
+	 * @return The ant's tour as indices into the connection matrix
+	 */
+	protected int[] constructAnt(double[] choice, int[][] candidates, SplittableRandom random) {
+		var ant = new int[n];
+		//keep track of which sensors the ant hasn't visited yet
+		var visited = new boolean[n];
+		//Pick a random starting Sensor and mark it as visited
+		ant[0] = random.nextInt(n);
+		visited[ant[0]] = true;
+		for (int step = 1; step < n; step++) {
+			//get the current Sensor's row of the matrices
+			var current = ant[step-1];
+			var row = current*n;
+			//Find the sum of the weightings for the available candidates
+			double sumWeight = 0.0;
+			for (int s: candidates[current]) {
+				if (!visited[s]) {
+					sumWeight += choice[row+s];
+				}
+			}
+			int next = -1;
+			if (sumWeight > 0.0) {
+				//roulette wheel selection, if the random value chosen is less than or equal to the cumulative weighting of the candidates so far, choose that sensor next
+				double p = random.nextDouble() * sumWeight;
+				double cumWeight = 0.0;
+				for (int s: candidates[current]) {
+					if (visited[s]) {
+						continue;
+					}
+					//default to the last available candidate in case of rounding
+					next = s;
+					cumWeight += choice[row+s];
+					if (p <= cumWeight) {
+						break;
+					}
+				}
+			} else {
+				//every candidate has been visited so choose from all the remaining sensors the same way
+				for (int s = 0; s < n; s++) {
+					if (!visited[s]) {
+						sumWeight += choice[row+s];
+					}
+				}
+				double p = random.nextDouble() * sumWeight;
+				double cumWeight = 0.0;
+				for (int s = 0; s < n; s++) {
+					if (visited[s]) {
+						continue;
+					}
+					next = s;
+					cumWeight += choice[row+s];
+					if (p <= cumWeight) {
+						break;
+					}
+				}
+			}
+			//add the next sensor chosen to the tour and mark it as visited
+			ant[step] = next;
+			visited[next] = true;
+		}
+		return ant;
+	}
+	
+	/**
+	 * 
+	 * Finds the closest sensors to each sensor by the cost of travelling to them
+	 * 
+	 * @param k The number of neighbours to find for each sensor (capped at n-1)
+	 * @return For each sensor the indices of its k closest other sensors, closest first
+	 */
+	protected int[][] nearestNeighbours(int k) {
+		k = Math.min(k, n-1);
+		var neighbours = new int[n][];
+		for (int a = 0; a < n; a++) {
+			var list = new int[k];
+			int size = 0;
+			//insertion sort each other sensor into the list, dropping anything that falls off the end
+			for (int b = 0; b < n; b++) {
+				if (b == a) {
+					continue;
+				}
+				int c = connectionMatrix[a*n+b];
+				if (size == k && (k == 0 || c >= connectionMatrix[a*n+list[k-1]])) {
+					continue;
+				}
+				int at = Math.min(size, k-1);
+				while (at > 0 && connectionMatrix[a*n+list[at-1]] > c) {
+					list[at] = list[at-1];
+					at--;
+				}
+				list[at] = b;
+				size = Math.min(size+1, k);
+			}
+			neighbours[a] = list;
+		}
+		return neighbours;
+	}
+	
+	/**
+	 * Reverses a subsection of an ordering in place
+	 * 
+	 * @param list The ordering
 	 * @param i Start index of subsection
-	 * @param j End index of subsection
-	 * @return A boolean representing if the verse of the subsection was better than the original
+	 * @param j End index of subsection (inclusive)
 	 */
-	private Boolean tryReverse(ArrayList<Sensor> list, Integer i, Integer j) {
-		//initial path length
-		Integer Initial = getCost(list);
-		//reverse the subsection
-		Collections.reverse(list.subList(i,j));
-		//if the new path length is lower than the initial path length then return true and leave the order with the reversed subsection
-		if (getCost(list) < Initial) {
-			return true;
+	private static void reverse(int[] list, int i, int j) {
+		for (; i < j; i++, j--) {
+			int t = list[i];
+			list[i] = list[j];
+			list[j] = t;
 		}
-		//otherwise undo the subsection reverse and return false
-		Collections.reverse(list.subList(i,j));
-		return false;
 	}
 	
 	/**
-	 * Two-Opt heuristic algorithm for TSP solution, all changes to the ordering are done 'in-place'
+	 * Two-Opt heuristic algorithm for TSP solution, all changes to the ordering are done 'in-place'<br>
+	 * Only moves that connect a sensor to one of its nearest neighbours are tried, and a sensor is only looked at again once one of the edges
+	 * around it has changed (its don't-look bit is cleared). Reversing a subsection also reverses the direction its inner edges are flown in
+	 * and the connection matrix isn't symmetric, so for each pair of removed edges both the subsection and the rest of the tour are tried.
+	 * The change in cost of each is found in constant time from prefix sums of the tour's edge costs in both directions.
 	 * 
-	 * @param connectionMatrix Matrix of distances between nodes
 	 * @param ordering Initial ordering of locations to visit
 	 */
-	private void Two_OPT(ArrayList<Sensor> ordering) {
-		Boolean better = true;
-		//run through all subsections of the ordering and check if reversing it improves the path length
-		//if the ordering improves then run through all subsections again until no improvement is found
-		while (better) {
-			better = false;
-			for (Integer j = 1; j < ordering.size(); j++) {
-				for (Integer i = 0; i < j; i++) {
-					better = tryReverse(ordering, i, j);
+	protected void Two_OPT(int[] ordering) {
+		if (n < 4) {
+			return;
+		}
+		var neighbours = nearestNeighbours(NEIGHBOURS);
+		//the position of each sensor in the ordering
+		var position = new int[n];
+		//forward[k] is the cost of flying the ordering from position 0 to position k, backward[k] the cost of flying it from position k back to 0
+		var forward = new int[n];
+		var backward = new int[n];
+		prefixCosts(ordering, position, forward, backward);
+		//the sensors whose don't-look bits are clear, waiting to be looked at
+		var active = new ArrayDeque<Integer>();
+		var queued = new boolean[n];
+		for (int i = 0; i < n; i++) {
+			active.add(ordering[i]);
+			queued[ordering[i]] = true;
+		}
+		while (!active.isEmpty()) {
+			int a = active.poll();
+			queued[a] = false;
+			int p = position[a];
+			for (int b: neighbours[a]) {
+				int q = position[b];
+				//either give a the successor b by reversing the subsection after a up to b,
+				//or give b the successor a by reversing the subsection after b up to a
+				int i, j;
+				if (q > p+1) {
+					i = p+1;
+					j = q;
+				} else if (q < p-1) {
+					i = q+1;
+					j = p;
+				} else {
+					continue;
+				}
+				//reversing the whole ordering apart from one sensor would leave the same edges to the outside
+				if (i == 0 && j == n-1) {
+					continue;
+				}
+				int prev = ordering[(i-1+n)%n];
+				int next = ordering[(j+1)%n];
+				int removed = connectionMatrix[prev*n+ordering[i]] + connectionMatrix[ordering[j]*n+next];
+				//the change from reversing the subsection between the two removed edges
+				int inner = connectionMatrix[prev*n+ordering[j]] + connectionMatrix[ordering[i]*n+next] - removed
+						+ (backward[j]-backward[i]) - (forward[j]-forward[i]);
+				//the change from reversing the rest of the tour instead, which joins the same sensors but flies every other edge the other way
+				int outerForward = forward[n-1] + connectionMatrix[ordering[n-1]*n+ordering[0]] - (forward[j]-forward[i]) - removed;
+				int outerBackward = backward[n-1] + connectionMatrix[ordering[0]*n+ordering[n-1]] - (backward[j]-backward[i])
+						- connectionMatrix[ordering[i]*n+prev] - connectionMatrix[next*n+ordering[j]];
+				int outer = connectionMatrix[ordering[j]*n+prev] + connectionMatrix[next*n+ordering[i]] - removed + outerBackward - outerForward;
+				if (inner < 0 || outer < 0) {
+					int first = ordering[i];
+					int last = ordering[j];
+					reverse(ordering, i, j);
+					//reversing the rest of the tour is the same as reversing the subsection and then the whole ordering
+					if (outer < inner) {
+						reverse(ordering, 0, n-1);
+					}
+					prefixCosts(ordering, position, forward, backward);
+					//clear the don't-look bits of the sensors at the ends of the changed edges
+					for (int c: new int[] {prev, first, last, next}) {
+						if (!queued[c]) {
+							active.add(c);
+							queued[c] = true;
+						}
+					}
+					break;
 				}
 			}
 		}
 	}
+	
+	/**
+	 * Records the position of every sensor in the ordering and the cost of flying the ordering up to each position in both directions
+	 * 
+	 * @param ordering The ordering
+	 * @param position Filled with the position of each sensor
+	 * @param forward Filled with the cost of flying from position 0 to each position
+	 * @param backward Filled with the cost of flying from each position back to position 0
+	 */
+	private void prefixCosts(int[] ordering, int[] position, int[] forward, int[] backward) {
+		position[ordering[0]] = 0;
+		for (int k = 1; k < n; k++) {
+			position[ordering[k]] = k;
+			forward[k] = forward[k-1] + connectionMatrix[ordering[k-1]*n+ordering[k]];
+			backward[k] = backward[k-1] + connectionMatrix[ordering[k]*n+ordering[k-1]];
+		}
+	}
 
 }
@@ -0,0 +1,123 @@
+package uk.ac.ed.inf.aqmaps;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ *
+ * Pather that wraps another Pather and answers from a precomputed PathTable whenever both ends of a path are sites in the table
+ * and the table was built with the same tolerance, step size, no-fly-zones and bounds. Every other path is passed on to the wrapped Pather.
+ *
+ * @author Yannik Nelson
+ * @see ForwardingPather
+ * @see PathTable
+ */
+class TablePather extends ForwardingPather {
+
+	private final Path tableFile;
+	private volatile PathTable table;
+
+	/**
+	 * Opens the table file if it exists, if it doesn't every path is passed on until warm is called
+	 *
+	 * @param p The Pather that will do the searching
+	 * @param tableFile The file the table is stored in
+	 */
+	TablePather(Pather p, Path tableFile) {
+		super(p);
+		this.tableFile = tableFile;
+		if (Files.exists(tableFile)) {
+			try {
+				this.table = PathTable.open(tableFile);
+				System.out.println(String.format("Loaded path table of %d sites", table.size()));
+			} catch (IOException e) {
+				System.out.println("Failed to read the path table, paths will be searched for");
+			}
+		}
+	}
+
+	/**
+	 *
+	 * Finds the path between every pair of the passed in sites with the wrapped Pather, saves them to the table file and starts answering from it.<br>
+	 * The Pather must already have its no-fly-zones, bounds and step size set.
+	 *
+	 * @param sites The sites to build the table for
+	 * @param tolerance The tolerance to find the paths with
+	 * @throws IOException If the table file can't be written
+	 */
+	void warm(ArrayList<? extends Location> sites, double tolerance) throws IOException {
+		var workers = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		//every search is independent so run them all in parallel and gather the paths in row major order
+		//a site's path to itself is passed on rather than looked up, so it's stored empty instead of searched for
+		var searches = new ArrayList<Callable<FlightPath>>();
+		for (var s1: sites) {
+			for (var s2: sites) {
+				searches.add(s1 == s2 ? FlightPath::new : () -> pather.path(s1, s2, tolerance));
+			}
+		}
+		var paths = new ArrayList<FlightPath>();
+		try {
+			for (var result: workers.invokeAll(searches)) {
+				paths.add(result.get());
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IOException("Failed to find the paths for the path table", e);
+		} finally {
+			workers.shutdown();
+		}
+		//unmap the old table before its file is replaced
+		var old = table;
+		table = null;
+		if (old != null) {
+			old.close();
+		}
+		PathTable.write(tableFile, sites, paths, tolerance, getStepSize(), getLatticeResolution(), getGeometryHash());
+		this.table = PathTable.open(tableFile);
+		System.out.println(String.format("Saved path table of %d sites", table.size()));
+	}
+
+	/**
+	 * Stops answering from the table and unmaps it, then closes the wrapped Pather
+	 */
+	@Override
+	public void close() throws IOException {
+		var t = table;
+		table = null;
+		if (t != null) {
+			t.close();
+		}
+		super.close();
+	}
+
+	@Override
+	public FlightPath path(Location start, Location end, double tolerance) {
+		var t = table;
+		if (t != null && t.matches(tolerance, getStepSize(), getLatticeResolution(), getGeometryHash())) {
+			int i = t.indexOf(start);
+			int j = t.indexOf(end);
+			if (i >= 0 && j >= 0 && i != j) {
+				return t.route(i, j);
+			}
+		}
+		return pather.path(start, end, tolerance);
+	}
+
+	@Override
+	public Integer pathLength(Location start, Location end, double tolerance) {
+		var t = table;
+		if (t != null && t.matches(tolerance, getStepSize(), getLatticeResolution(), getGeometryHash())) {
+			int i = t.indexOf(start);
+			int j = t.indexOf(end);
+			if (i >= 0 && j >= 0 && i != j) {
+				return t.cost(i, j);
+			}
+		}
+		return pather.pathLength(start, end, tolerance);
+	}
+
+}
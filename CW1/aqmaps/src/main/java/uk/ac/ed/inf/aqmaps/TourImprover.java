@@ -0,0 +1,27 @@
+package uk.ac.ed.inf.aqmaps;
+
+/**
+ * 
+ * Standard interface for local search stages that improve a tour after it has been constructed
+ * 
+ * @author Yannik Nelson
+ *
+ */
+interface TourImprover {
+	
+	/**
+	 * 
+	 * Improves the tour in place, the tour is treated as a cycle so it may be rotated
+	 * 
+	 * @param tour The tour as indices into the cost matrix
+	 * @param costs The row major cost matrix, the cost from i to j is at i*n+j (it doesn't have to be symmetric)
+	 * @param n The number of locations in the tour
+	 */
+	void improve(int[] tour, int[] costs, int n);
+	
+	/**
+	 * 
+	 * @return The name of the stage, used when reporting the cost after it
+	 */
+	String getName();
+}
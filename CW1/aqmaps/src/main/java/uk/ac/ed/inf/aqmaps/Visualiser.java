@@ -25,7 +25,7 @@ interface Visualiser {
 	 * Will convert the flight path into a line and add that line to the internal feature list
 	 * @param path The flight path
 	 */
-	void AddFlightPath(ArrayList<Location> path);
+	void AddFlightPath(FlightPath path);
 	
 	/**
 	 * Will save the visualisation of the internal feature list to the specified path (Note the path must end in the desired file format)
@@ -0,0 +1,162 @@
+package uk.ac.ed.inf.aqmaps;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *
+ * Cache of the coordinates of What3Words locations, held in memory and optionally saved to a binary file so each location only ever has to be
+ * requested from the server once, however many runs or days it appears in.<br>
+ * The file is a header followed by one entry per location, each new location is appended to the end as soon as it's resolved.
+ *
+ * @author Yannik Nelson
+ * @see Client
+ */
+class WordsCache {
+
+	//marks the start of a cache file and the version of its layout
+	private static final int MAGIC = 0x41515757;
+	private static final int VERSION = 1;
+	//size in bytes of the file header
+	private static final int HEADER = 8;
+
+	private final Path cacheFile;
+	private final ConcurrentHashMap<String, Location> locations = new ConcurrentHashMap<>();
+	private DataOutputStream out;
+
+	/**
+	 * Creates a cache that is only held in memory
+	 */
+	WordsCache() {
+		this.cacheFile = null;
+	}
+
+	/**
+	 * Loads any locations already saved in the cache file, new locations are appended to the end of the file as they're resolved
+	 *
+	 * @param cacheFile The file the locations are saved in, it's created if it doesn't exist
+	 */
+	WordsCache(Path cacheFile) {
+		this.cacheFile = cacheFile;
+		load();
+	}
+
+	/**
+	 *
+	 * @param what3words A What3Words String
+	 * @return The saved coordinates of the location, or null if it hasn't been resolved before
+	 */
+	Location get(String what3words) {
+		return locations.get(what3words);
+	}
+
+	/**
+	 *
+	 * Saves the coordinates of a location, appending them to the cache file if they're new
+	 *
+	 * @param what3words A What3Words String
+	 * @param location The coordinates of the location
+	 */
+	void put(String what3words, Location location) {
+		if (locations.putIfAbsent(what3words, location) == null && cacheFile != null) {
+			append(what3words, location);
+		}
+	}
+
+	/**
+	 *
+	 * @return The number of locations in the cache
+	 */
+	int size() {
+		return locations.size();
+	}
+
+	/**
+	 * Reads every entry from the cache file into memory, starting a new file if it's missing or isn't a cache file.<br>
+	 * A partly written entry at the end of the file (from a run that was stopped mid write) is cut off so new entries line up.
+	 */
+	private void load() {
+		if (Files.exists(cacheFile)) {
+			try {
+				var bytes = Files.readAllBytes(cacheFile);
+				var stream = new ByteArrayInputStream(bytes);
+				var in = new DataInputStream(stream);
+				if (bytes.length >= HEADER && in.readInt() == MAGIC && in.readInt() == VERSION) {
+					//the end of the last complete entry
+					long end = HEADER;
+					try {
+						while (stream.available() > 0) {
+							var words = in.readUTF();
+							var location = new Node(in.readDouble(), in.readDouble());
+							locations.put(words, location);
+							end = bytes.length - stream.available();
+						}
+					} catch (EOFException | UTFDataFormatException e) {
+						//the last entry was only partly written
+					}
+					truncate(end);
+					System.out.println(String.format("Loaded %d cached What3Words locations", locations.size()));
+					return;
+				}
+				System.out.println("What3Words cache is not in the expected format, starting a new one");
+			} catch (IOException e) {
+				System.out.println("Failed to read the What3Words cache, starting a new one");
+			}
+		}
+		locations.clear();
+		try {
+			//write a fresh header, replacing whatever was in the file
+			out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(cacheFile)));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.flush();
+		} catch (IOException e) {
+			System.out.println("Failed to create the What3Words cache, locations will not be saved");
+		}
+	}
+
+	/**
+	 * Cuts the cache file down to the passed in size, dropping any partly written entry
+	 *
+	 * @param size The size of the file in bytes
+	 */
+	private void truncate(long size) {
+		try (var channel = FileChannel.open(cacheFile, StandardOpenOption.WRITE)) {
+			if (channel.size() > size) {
+				channel.truncate(size);
+			}
+		} catch (IOException e) {
+			System.out.println("Failed to tidy the What3Words cache");
+		}
+	}
+
+	/**
+	 * Appends an entry to the end of the cache file, flushing it straight away so it's kept even if the run doesn't finish
+	 *
+	 * @param what3words A What3Words String
+	 * @param location The coordinates of the location
+	 */
+	private synchronized void append(String what3words, Location location) {
+		try {
+			if (out == null) {
+				out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(cacheFile, StandardOpenOption.APPEND)));
+			}
+			out.writeUTF(what3words);
+			out.writeDouble(location.longitude());
+			out.writeDouble(location.latitude());
+			out.flush();
+		} catch (IOException e) {
+			System.out.println("Failed to save a What3Words location to the cache");
+		}
+	}
+}
@@ -2,25 +2,140 @@ package uk.ac.ed.inf.aqmaps;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.jupiter.api.Test;
 
 class AStarPatherTest {
 
-	@Test
-	void testPath() {
+	private static final double STEPSIZE = 0.0003;
+
+	private static AStarPather pather() {
 		var testPather = new AStarPather();
-		testPather.setStepSize(0.0003);
+		testPather.setStepSize(STEPSIZE);
 		testPather.setBounds(5.0, -5.0, -5.0, 5.0);
+		return testPather;
+	}
+
+	/**
+	 * Checks every step of the path is a full step long and flown at an angle the drone can fly at (a multiple of 5 degrees)
+	 */
+	private static void assertSteps(FlightPath path) {
+		for (int i = 1; i < path.size(); i++) {
+			var dLon = path.longitude(i) - path.longitude(i-1);
+			var dLat = path.latitude(i) - path.latitude(i-1);
+			assertEquals(STEPSIZE, Math.sqrt(dLon*dLon + dLat*dLat), 1e-12);
+			var heading = path.heading(i);
+			assertEquals(0, heading % 5);
+			assertTrue(heading >= 0 && heading < 360);
+			assertEquals(Math.cos(Math.toRadians(heading)), dLon/STEPSIZE, 1e-9);
+			assertEquals(Math.sin(Math.toRadians(heading)), dLat/STEPSIZE, 1e-9);
+		}
+	}
+
+	/**
+	 * @return Boolean representing if the segment from a to b properly crosses the segment from c to d
+	 */
+	private static boolean crosses(double ax, double ay, double bx, double by, Location c, Location d) {
+		var d1 = Math.signum((bx-ax)*(c.latitude()-ay) - (by-ay)*(c.longitude()-ax));
+		var d2 = Math.signum((bx-ax)*(d.latitude()-ay) - (by-ay)*(d.longitude()-ax));
+		var d3 = Math.signum((d.longitude()-c.longitude())*(ay-c.latitude()) - (d.latitude()-c.latitude())*(ax-c.longitude()));
+		var d4 = Math.signum((d.longitude()-c.longitude())*(by-c.latitude()) - (d.latitude()-c.latitude())*(bx-c.longitude()));
+		return d1*d2 < 0 && d3*d4 < 0;
+	}
+
+	@Test
+	void testPath() {
+		var testPather = pather();
 		var start = new Node(0.0, 0.0);
 		var end = new Node(0.0006, 0.0);
 		var test = testPather.path(start, end, 0.00001);
-		System.out.println(test);
+		//two steps due east, the start plus the two positions reached
+		assertEquals(3, test.size());
+		assertEquals(0.0, test.longitude(0));
+		assertEquals(0.0, test.latitude(0));
+		assertEquals(0, test.heading(1));
+		assertEquals(0, test.heading(2));
+		assertTrue(testPather.findDistance(test.last(), end) < 0.00001);
+		assertSteps(test);
+	}
+
+	@Test
+	void testPathReachesTarget() {
+		var testPather = pather();
+		var start = new Node(0.0, 0.0);
+		var end = new Node(0.00123, -0.00071);
+		var test = testPather.path(start, end, 0.0002);
+		assertTrue(testPather.findDistance(test.last(), end) < 0.0002);
+		//the target is a little over four steps away once the tolerance is taken off, so five steps is the fewest possible
+		assertEquals(6, test.size());
+		assertEquals(test.size(), testPather.pathLength(start, end, 0.0002));
+		assertSteps(test);
+	}
+
+	@Test
+	void testStartInRange() {
+		var testPather = pather();
+		var start = new Node(0.0, 0.0);
+		var end = new Node(0.0001, 0.0);
+		var test = testPather.path(start, end, 0.0002);
+		//the drone must still move, so it steps out and straight back to where it started
+		assertEquals(3, test.size());
+		assertEquals(start.longitude(), test.longitude(2), 1e-12);
+		assertEquals(start.latitude(), test.latitude(2), 1e-12);
+		assertEquals((test.heading(1) + 180) % 360, test.heading(2));
+		assertSteps(test);
+	}
+
+	@Test
+	void testAvoidsNoFlyZone() {
+		var testPather = pather();
+		//a square sitting across the straight line from the start to the end
+		var zone = new ArrayList<Location>(List.of(new Node(0.0006, -0.0006), new Node(0.0012, -0.0006), new Node(0.0012, 0.0006), new Node(0.0006, 0.0006), new Node(0.0006, -0.0006)));
+		var zones = new ArrayList<ArrayList<Location>>();
+		zones.add(zone);
+		testPather.setNoFlyZones(zones);
+		var start = new Node(0.0, 0.0);
+		var end = new Node(0.0018, 0.0);
+		var test = testPather.path(start, end, 0.0002);
+		assertTrue(testPather.findDistance(test.last(), end) < 0.0002);
+		//going around the zone takes longer than the six steps of the straight line
+		assertTrue(test.size() - 1 > 6);
+		assertSteps(test);
+		for (int i = 1; i < test.size(); i++) {
+			for (int j = 1; j < zone.size(); j++) {
+				assertFalse(crosses(test.longitude(i-1), test.latitude(i-1), test.longitude(i), test.latitude(i), zone.get(j-1), zone.get(j)));
+			}
+			var inside = test.longitude(i) > 0.0006 && test.longitude(i) < 0.0012 && test.latitude(i) > -0.0006 && test.latitude(i) < 0.0006;
+			assertFalse(inside);
+		}
+	}
+
+	@Test
+	void testLatticePath() {
+		var testPather = pather();
+		testPather.setLatticeResolution(0.0000001);
+		var start = new Node(0.0, 0.0);
+		var end = new Node(0.00123, 0.00071);
+		var test = testPather.path(start, end, 0.0002);
+		assertTrue(testPather.findDistance(test.last(), end) < 0.0002);
+		//every position after the start should sit exactly on the lattice
+		for (int i = 1; i < test.size(); i++) {
+			assertEquals(test.longitude(i), Math.round(test.longitude(i)/0.0000001) * 0.0000001);
+			assertEquals(test.latitude(i), Math.round(test.latitude(i)/0.0000001) * 0.0000001);
+		}
+		//the same query should always give exactly the same path
+		assertEquals(test.toString(), testPather.path(start, end, 0.0002).toString());
+		//hashing the states shouldn't cost more than a step against the continuous search
+		assertTrue(test.size() <= pather().path(start, end, 0.0002).size() + 1);
 	}
 
 	@Test
 	void testFindDistance() {
-//		fail("Not yet implemented");
-		assertTrue(true);
+		var testPather = pather();
+		assertEquals(0.0005, testPather.findDistance(new Node(0.0, 0.0), new Node(0.0003, 0.0004)), 1e-12);
+		assertEquals(0.0, testPather.findDistance(new Node(-3.19, 55.94), new Node(-3.19, 55.94)));
 	}
 
 }
@@ -0,0 +1,124 @@
+package uk.ac.ed.inf.aqmaps;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CachingPatherTest {
+
+	/**
+	 * AStarPather that counts how many searches it has been asked to do
+	 */
+	private static class CountingPather extends AStarPather {
+		int searches = 0;
+
+		@Override
+		public FlightPath path(Location start, Location end, double tolerance) {
+			searches++;
+			return super.path(start, end, tolerance);
+		}
+	}
+
+	private static ArrayList<ArrayList<Location>> zone(Double offset) {
+		var z = new ArrayList<Location>();
+		z.add(new Node(offset, 1.0));
+		z.add(new Node(offset + 0.001, 1.0));
+		z.add(new Node(offset + 0.001, 1.001));
+		z.add(new Node(offset, 1.0));
+		var zones = new ArrayList<ArrayList<Location>>();
+		zones.add(z);
+		return zones;
+	}
+
+	private static CachingPather setUp(CountingPather counter, Path file, Double offset) {
+		var p = new CachingPather(counter, file);
+		p.setStepSize(0.0003);
+		p.setBounds(5.0, -5.0, -5.0, 5.0);
+		p.setNoFlyZones(zone(offset));
+		return p;
+	}
+
+	@Test
+	void testPathLengthIsCachedAcrossRuns(@TempDir Path dir) {
+		var file = dir.resolve("cache.bin");
+		var start = new Node(0.0, 0.0);
+		var end = new Node(0.0012, 0.0);
+
+		var first = new CountingPather();
+		var p = setUp(first, file, 2.0);
+		var length = p.pathLength(start, end, 0.0002);
+		assertEquals(length, p.pathLength(start, end, 0.0002));
+		assertEquals(1, first.searches);
+
+		//a new run with the same configuration should not need to search at all
+		var second = new CountingPather();
+		p = setUp(second, file, 2.0);
+		assertEquals(length, p.pathLength(start, end, 0.0002));
+		assertEquals(0, second.searches);
+
+		//changing the no-fly-zones or the tolerance must search again
+		var third = new CountingPather();
+		p = setUp(third, file, 3.0);
+		p.pathLength(start, end, 0.0002);
+		p.pathLength(start, end, 0.0001);
+		assertEquals(2, third.searches);
+	}
+
+	@Test
+	void testCloseReleasesTheFile(@TempDir Path dir) throws Exception {
+		var file = dir.resolve("cache.bin");
+		var start = new Node(0.0, 0.0);
+		var end = new Node(0.0012, 0.0);
+		try (var p = setUp(new CountingPather(), file, 2.0)) {
+			p.pathLength(start, end, 0.0002);
+		}
+		//the entry was written out before the file was closed, and the next run finds it
+		assertEquals(8 + 68, Files.size(file));
+		var counter = new CountingPather();
+		try (var p = setUp(counter, file, 2.0)) {
+			p.pathLength(start, end, 0.0002);
+		}
+		assertEquals(0, counter.searches);
+	}
+
+	@Test
+	void testLatticeIsPartOfTheKey(@TempDir Path dir) {
+		var file = dir.resolve("cache.bin");
+		var start = new Node(0.0, 0.0);
+		var end = new Node(0.00123, 0.00071);
+		setUp(new CountingPather(), file, 2.0).pathLength(start, end, 0.0002);
+
+		//the same path in the discretised mode must be searched for rather than answered with the continuous length
+		var counter = new CountingPather();
+		var p = setUp(counter, file, 2.0);
+		p.setLatticeResolution(0.0000001);
+		p.pathLength(start, end, 0.0002);
+		assertEquals(1, counter.searches);
+		p.pathLength(start, end, 0.0002);
+		assertEquals(1, counter.searches);
+	}
+
+	@Test
+	void testPartialEntryIsDropped(@TempDir Path dir) throws Exception {
+		var file = dir.resolve("cache.bin");
+		var start = new Node(0.0, 0.0);
+		var end = new Node(0.0012, 0.0);
+		setUp(new CountingPather(), file, 2.0).pathLength(start, end, 0.0002);
+		//simulate a run that stopped half way through writing an entry
+		Files.write(file, new byte[] {1, 2, 3}, StandardOpenOption.APPEND);
+
+		var counter = new CountingPather();
+		var p = setUp(counter, file, 2.0);
+		p.pathLength(start, end, 0.0002);
+		p.pathLength(end, start, 0.0002);
+		assertEquals(1, counter.searches);
+		assertEquals(8 + 2 * 68, Files.size(file));
+	}
+
+}
@@ -3,7 +3,10 @@ package uk.ac.ed.inf.aqmaps;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
@@ -12,6 +15,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
@@ -46,6 +52,7 @@ class ClientTest {
 		String ExpectedRequest = "http://localhost:" + Integer.toString(port) + "/buildings/no-fly-zones.geojson GET";
 		
 		Mockito.when(mockNoFlyResponse.body()).thenReturn(Files.readString(Path.of("src/test/resources/buildings/no-fly-zones.geojson")));
+		Mockito.when(mockNoFlyResponse.headers()).thenReturn(HttpHeaders.of(Map.of(), (k, v) -> true));
 		Mockito.when(mockHttpClient.send(URLcaptor.capture(),Mockito.any())).thenReturn(mockNoFlyResponse);
 		
 		ClientWrapper testClient = new Client(port);
@@ -58,6 +65,27 @@ class ClientTest {
 		assertEquals(URLcaptor.getValue().toString(), ExpectedRequest);
 	}
 
+	@Test
+	void testGetNoFlyRevalidates() throws IOException, InterruptedException, NoSuchFieldException, SecurityException {
+		Integer port = 80;
+		String modified = "Mon Dec 14 16:01:52 UTC 2020";
+		
+		Mockito.when(mockNoFlyResponse.body()).thenReturn(Files.readString(Path.of("src/test/resources/buildings/no-fly-zones.geojson")));
+		Mockito.when(mockNoFlyResponse.headers()).thenReturn(HttpHeaders.of(Map.of("Last-Modified", List.of(modified)), (k, v) -> true));
+		Mockito.when(mockNoFlyResponse.statusCode()).thenReturn(200, 304);
+		Mockito.when(mockHttpClient.send(URLcaptor.capture(),Mockito.any())).thenReturn(mockNoFlyResponse);
+		
+		ClientWrapper testClient = new Client(port);
+		FieldSetter.setField(testClient, testClient.getClass().getDeclaredField("client"), mockHttpClient);
+		var first = testClient.getNoFly();
+		//the first request has nothing to revalidate against
+		assertTrue(URLcaptor.getValue().headers().firstValue("If-Modified-Since").isEmpty());
+		//a server that sends the same GeoJson again and one that says it hasn't changed both give back the cached zones
+		assertSame(first, testClient.getNoFly());
+		assertEquals(URLcaptor.getValue().headers().firstValue("If-Modified-Since").get(), modified);
+		assertSame(first, testClient.getNoFly());
+	}
+
 	@Test
 	void testGetDestinations() throws IOException, InterruptedException, NoSuchFieldException, SecurityException {
 		Integer port = 80;
@@ -66,16 +94,24 @@ class ClientTest {
 		String year = "2020";
 		
 //		Mockito.when(mockNoFlyResponse.body()).thenReturn(Files.readString(Path.of("src/test/resources/words")));
-		Mockito.when(mockHttpClient.send(Mockito.any(),Mockito.any())).thenAnswer(new Answer<HttpResponse<String>>() {
+		//the day's JSON is sent synchronously and the What3Words locations asynchronously, both answer from the test resources
+		Mockito.when(mockHttpClient.send(Mockito.any(),Mockito.any())).thenAnswer(new Answer<HttpResponse<InputStream>>() {
 			@Override
-			public HttpResponse<String> answer(InvocationOnMock invocation) throws Throwable {
-				var response = Mockito.mock(HttpResponse.class);
-				var invargs = invocation.getArguments();
-				var request = (HttpRequest)invargs[0];
-				var parts = String.join("/", Arrays.copyOfRange(request.toString().split(" ")[0].split("/"), 3, request.toString().split(" ")[0].split("/").length));
-				String body = Files.readString(Path.of("src/test/resources/" + parts));
-				Mockito.when(response.body()).thenReturn(body);
-				return response;
+			public HttpResponse<InputStream> answer(InvocationOnMock invocation) throws Throwable {
+				return resourceResponse((HttpRequest)invocation.getArguments()[0]);
+			}
+		});
+		Mockito.when(mockHttpClient.sendAsync(Mockito.any(),Mockito.any())).thenAnswer(new Answer<CompletableFuture<HttpResponse<InputStream>>>() {
+			@Override
+			public CompletableFuture<HttpResponse<InputStream>> answer(InvocationOnMock invocation) throws Throwable {
+				var request = (HttpRequest)invocation.getArguments()[0];
+				return CompletableFuture.supplyAsync(() -> {
+					try {
+						return resourceResponse(request);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
 			}
 		});
 		
@@ -83,22 +119,42 @@ class ClientTest {
 		FieldSetter.setField(testClient, testClient.getClass().getDeclaredField("client"), mockHttpClient);
 		ArrayList<Sensor> t = testClient.getDestinations(day, month, year);
 		assertEquals(t.size(), 33);
+		//the sensors keep the order of the JSON and are joined with their resolved locations
+		assertEquals(t.get(0).getWhat3Words(), "love.behind.orchestra");
+		assertEquals(t.get(0).getBattery(), 95.65336);
+		assertEquals(t.get(0).getReading(), "249.45");
+		assertEquals(t.get(0).longitude(), testClient.LocationFromWords("love.behind.orchestra").longitude());
+	}
+	
+	/**
+	 * @return A response whose body is the test resource at the path of the request
+	 */
+	private static HttpResponse<InputStream> resourceResponse(HttpRequest request) throws IOException {
+		@SuppressWarnings("unchecked")
+		HttpResponse<InputStream> response = Mockito.mock(HttpResponse.class);
+		var parts = String.join("/", Arrays.copyOfRange(request.toString().split(" ")[0].split("/"), 3, request.toString().split(" ")[0].split("/").length));
+		InputStream body = Files.newInputStream(Path.of("src/test/resources/" + parts));
+		Mockito.when(response.body()).thenReturn(body);
+		//the air quality data is read without checking the status, only the What3Words details are
+		Mockito.lenient().when(response.statusCode()).thenReturn(200);
+		return response;
 	}
 
 	@Test
 	void testLocationFromWords() throws IOException, InterruptedException, NoSuchFieldException, SecurityException {
 		Integer port = 80;
 		
-		Mockito.when(mockHttpClient.send(Mockito.any(),Mockito.any())).thenAnswer(new Answer<HttpResponse<String>>() {
+		Mockito.when(mockHttpClient.send(Mockito.any(),Mockito.any())).thenAnswer(new Answer<HttpResponse<InputStream>>() {
 			@Override
-			public HttpResponse<String> answer(InvocationOnMock invocation) throws Throwable {
+			public HttpResponse<InputStream> answer(InvocationOnMock invocation) throws Throwable {
 				var response = Mockito.mock(HttpResponse.class);
 				var invargs = invocation.getArguments();
 				var request = (HttpRequest)invargs[0];
 				var parts = String.join("/", Arrays.copyOfRange(request.toString().split(" ")[0].split("/"), 3, request.toString().split(" ")[0].split("/").length));
 				System.out.println(parts);
-				String body = Files.readString(Path.of("src/test/resources/" + parts));
+				InputStream body = Files.newInputStream(Path.of("src/test/resources/" + parts));
 				Mockito.when(response.body()).thenReturn(body);
+				Mockito.when(response.statusCode()).thenReturn(200);
 				return response;
 			}
 		});
@@ -108,6 +164,37 @@ class ClientTest {
 		Location t = testClient.LocationFromWords("along.spill.limp");
 		assertEquals(t.longitude(), -3.191161);
 		assertEquals(t.latitude(), 55.942742);
+		//the second time the location comes from the cache without asking the server
+		testClient.LocationFromWords("along.spill.limp");
+		Mockito.verify(mockHttpClient, Mockito.times(1)).send(Mockito.any(), Mockito.any());
+	}
+	
+	@Test
+	void testGetDestinationsMissingWords() throws IOException, InterruptedException, NoSuchFieldException, SecurityException {
+		Integer port = 80;
+		
+		//the air quality data is there but the server has no details for any What3Words location
+		Mockito.when(mockHttpClient.send(Mockito.any(),Mockito.any())).thenAnswer(new Answer<HttpResponse<InputStream>>() {
+			@Override
+			public HttpResponse<InputStream> answer(InvocationOnMock invocation) throws Throwable {
+				return resourceResponse((HttpRequest)invocation.getArguments()[0]);
+			}
+		});
+		Mockito.when(mockHttpClient.sendAsync(Mockito.any(),Mockito.any())).thenAnswer(new Answer<CompletableFuture<HttpResponse<InputStream>>>() {
+			@Override
+			public CompletableFuture<HttpResponse<InputStream>> answer(InvocationOnMock invocation) throws Throwable {
+				@SuppressWarnings("unchecked")
+				HttpResponse<InputStream> response = Mockito.mock(HttpResponse.class);
+				Mockito.when(response.body()).thenReturn(InputStream.nullInputStream());
+				Mockito.when(response.statusCode()).thenReturn(404);
+				return CompletableFuture.completedFuture(response);
+			}
+		});
+		
+		ClientWrapper testClient = new Client(port);
+		FieldSetter.setField(testClient, testClient.getClass().getDeclaredField("client"), mockHttpClient);
+		var e = assertThrows(IOException.class, () -> testClient.getDestinations("01", "01", "2020"));
+		assertTrue(e.getCause().getMessage().contains("404"));
 	}
 
 }
@@ -0,0 +1,112 @@
+package uk.ac.ed.inf.aqmaps;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ExactTSPSolutionTest {
+
+	/**
+	 * @return The cost of the cheapest tour of the matrix, found by trying every ordering of the sensors after 0
+	 */
+	private static int bruteForce(int[] costs, int n) {
+		var tour = TourImproverTest.identity(n);
+		return permute(tour, 1, costs, n);
+	}
+
+	private static int permute(int[] tour, int from, int[] costs, int n) {
+		if (from == n) {
+			return TourImproverTest.cost(tour, costs, n);
+		}
+		int best = Integer.MAX_VALUE;
+		for (int i = from; i < n; i++) {
+			int t = tour[from]; tour[from] = tour[i]; tour[i] = t;
+			best = Math.min(best, permute(tour, from+1, costs, n));
+			t = tour[from]; tour[from] = tour[i]; tour[i] = t;
+		}
+		return best;
+	}
+
+	@Test
+	void testHeldKarp() {
+		for (long seed = 0; seed < 10; seed++) {
+			int n = 2 + (int) seed % 7;
+			var costs = TourImproverTest.randomCosts(n, seed);
+			var tour = ExactTSPSolution.heldKarp(costs, n);
+			assertEquals(bruteForce(costs, n), TourImproverTest.cost(tour, costs, n));
+		}
+	}
+
+	@Test
+	void testBounds() {
+		//neither bound should ever be above the cost of the optimal tour
+		for (long seed = 0; seed < 20; seed++) {
+			int n = 4 + (int) seed % 9;
+			var costs = TourImproverTest.randomCosts(n, seed);
+			int optimal = TourImproverTest.cost(ExactTSPSolution.heldKarp(costs, n), costs, n);
+			assertTrue(ExactTSPSolution.oneTreeBound(costs, n) <= optimal);
+			var matrix = costs.clone();
+			for (int i = 0; i < n; i++) {
+				matrix[i*n+i] = 1_000_000;
+			}
+			assertTrue(ExactTSPSolution.hungarian(matrix, n, new int[n]) <= optimal);
+		}
+	}
+
+	@Test
+	void testHungarian() {
+		var matrix = new int[] {
+				4, 1, 3,
+				2, 0, 5,
+				3, 2, 2};
+		var assignment = new int[3];
+		assertEquals(5, ExactTSPSolution.hungarian(matrix, 3, assignment));
+		assertArrayEquals(new int[] {1, 0, 2}, assignment);
+	}
+
+	@Test
+	void testBranchAndBound() {
+		//just above the Held-Karp limit so the branch and bound has to find the optimum itself, checked against Held-Karp on the same matrix
+		for (long seed = 0; seed < 10; seed++) {
+			var exact = new ExactTSPSolution(new TSPSolutionTest.AsymmetricPather(), new Random(seed), 1);
+			exact.setBudget(60_000L);
+			exact.n = 17 + (int) seed % 2;
+			exact.connectionMatrix = TourImproverTest.randomCosts(exact.n, seed);
+			var tour = exact.ACOTSP();
+			exact.close();
+			var sorted = tour.clone();
+			Arrays.sort(sorted);
+			assertArrayEquals(TourImproverTest.identity(exact.n), sorted);
+			var optimal = ExactTSPSolution.heldKarp(exact.connectionMatrix, exact.n);
+			assertEquals(TourImproverTest.cost(optimal, exact.connectionMatrix, exact.n), exact.getCost(tour));
+		}
+	}
+
+	@Test
+	void testSolve() {
+		//too many sensors for Held-Karp so this goes through the branch and bound
+		var sensors = TSPSolutionTest.sensors(20, 4);
+		var pather = new TSPSolutionTest.AsymmetricPather();
+		var exact = new ExactTSPSolution(pather, new Random(1), 2);
+		exact.setBudget(2000L);
+		var order = exact.solve(sensors, sensors.get(0));
+		assertEquals(sensors.size(), new HashSet<Sensor>(order).size());
+		assertSame(sensors.get(0), order.get(0));
+		var heuristic = new TSPSolution(pather, new Random(1), 2).solve(sensors, sensors.get(0));
+		assertTrue(cost(order, pather) <= cost(heuristic, pather));
+	}
+
+	private static int cost(ArrayList<Sensor> order, Pather pather) {
+		int total = 0;
+		for (int i = 0; i < order.size(); i++) {
+			total += pather.pathLength(order.get(i), order.get((i+1)%order.size()), 0.0002);
+		}
+		return total;
+	}
+
+}
@@ -0,0 +1,45 @@
+package uk.ac.ed.inf.aqmaps;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class FlightPathTest {
+
+	@Test
+	void testGrowTruncateAndAppend() {
+		var first = new FlightPath(1);
+		first.add(0.0, 0.0, -1);
+		for (int i = 1; i <= 40; i++) {
+			first.add(i * 0.0003, 0.0, 0);
+		}
+		assertEquals(41, first.size());
+		first.truncate(3);
+		assertEquals(3, first.size());
+		assertEquals(0.0006, first.last().longitude());
+
+		var second = new FlightPath();
+		second.add(0.0006, 0.0, -1);
+		second.add(0.0006, 0.0003, 90);
+		//the position the second path starts at is already the end of the first
+		first.append(second, 1);
+		assertEquals(4, first.size());
+		assertEquals(0.0003, first.latitude(3));
+		assertEquals(90, first.heading(3));
+		assertEquals("[[0.0,0.0, -1], [3.0E-4,0.0, 0], [6.0E-4,0.0, 0], [6.0E-4,3.0E-4, 90]]", first.toString());
+	}
+
+	@Test
+	void testReverse() {
+		var path = new FlightPath();
+		path.add(1.0, 2.0, 5);
+		path.add(3.0, 4.0, 10);
+		path.add(5.0, 6.0, 15);
+		path.reverse();
+		assertEquals(5.0, path.longitude(0));
+		assertEquals(15, path.heading(0));
+		assertEquals(3.0, path.longitude(1));
+		assertEquals(1.0, path.longitude(2));
+		assertEquals(2.0, path.latitude(2));
+	}
+}
@@ -2,8 +2,20 @@ package uk.ac.ed.inf.aqmaps;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
 import org.junit.jupiter.api.Test;
 
+import com.mapbox.geojson.Feature;
+import com.mapbox.geojson.FeatureCollection;
+import com.mapbox.geojson.LineString;
+import com.mapbox.geojson.Point;
+
 class GeoJsonVisualiserTest {
 
 	@Test
@@ -24,4 +36,73 @@ class GeoJsonVisualiserTest {
 		assertTrue(true);
 	}
 
+	@Test
+	void testOutputMatchesMapbox() throws IOException {
+		var visited = new SensorNode("love.behind.orchestra", -3.1862, 55.9451, 95.65336, "249.45");
+		var flat = new SensorNode("dent.shins.cycle", -3.18678, 55.94457123456789, 5.0, "179.56");
+		var missed = new SensorNode("burn.spot.across", -3.1903, 55.9444, 32.77466, "39.83");
+		var path = new FlightPath();
+		path.add(-3.1878, 55.9444, 0);
+		path.add(-3.18752, 55.9445432101, 45);
+		path.add(-3.1878, 55.9444, 225);
+
+		var vis = new GeoJsonVisualiser();
+		vis.AddVisitedSensors(new ArrayList<Sensor>(List.of(visited, flat)));
+		vis.AddNotVisitedSensors(new ArrayList<Sensor>(List.of(missed)));
+		vis.AddFlightPath(path);
+		vis.OuputVisualisation("target/test-readings.geojson");
+
+		//the same collection built with the Mapbox library
+		var features = new ArrayList<Feature>();
+		var first = Feature.fromGeometry(Point.fromLngLat(visited.longitude(), visited.latitude()));
+		first.addStringProperty("location", "love.behind.orchestra");
+		first.addStringProperty("rgb-string", "#ff0000");
+		first.addStringProperty("marker-color", "#ff0000");
+		first.addStringProperty("marker-symbol", "danger");
+		features.add(first);
+		var second = Feature.fromGeometry(Point.fromLngLat(flat.longitude(), flat.latitude()));
+		second.addStringProperty("location", "dent.shins.cycle");
+		second.addStringProperty("rgb-string", "#000000");
+		second.addStringProperty("marker-color", "#000000");
+		second.addStringProperty("marker-symbol", "cross");
+		features.add(second);
+		var third = Feature.fromGeometry(Point.fromLngLat(missed.longitude(), missed.latitude()));
+		third.addStringProperty("location", "burn.spot.across");
+		third.addStringProperty("rgb-string", "#aaaaaa");
+		third.addStringProperty("marker-color", "#aaaaaa");
+		features.add(third);
+		var line = new ArrayList<Point>();
+		for (int i = 0; i < path.size(); i++) {
+			line.add(Point.fromLngLat(path.longitude(i), path.latitude(i)));
+		}
+		features.add(Feature.fromGeometry(LineString.fromLngLats(line)));
+
+		var written = Files.readString(Paths.get(System.getProperty("user.dir"), "target/test-readings.geojson"));
+		assertEquals(FeatureCollection.fromFeatures(features).toJson(), written);
+	}
+
+	/**
+	 * @return The names of the GeoJson spool files in the system temp directory
+	 */
+	private static List<String> spools() throws IOException {
+		try (var files = Files.list(Paths.get(System.getProperty("java.io.tmpdir")))) {
+			return files.map(p -> p.getFileName().toString()).filter(n -> n.startsWith("readings") && n.endsWith(".geojson.part")).sorted().collect(Collectors.toList());
+		}
+	}
+
+	@Test
+	void testSpoolIsRemovedWhenOutputFails() throws IOException {
+		var before = spools();
+		var vis = new GeoJsonVisualiser();
+		vis.AddNotVisitedSensors(new ArrayList<Sensor>(List.of(new SensorNode("burn.spot.across", -3.1903, 55.9444, 32.77466, "39.83"))));
+		//the spool is never written to the output directory
+		try (var files = Files.list(Paths.get(System.getProperty("user.dir")))) {
+			assertFalse(files.anyMatch(p -> p.getFileName().toString().endsWith(".geojson.part")));
+		}
+		//the output directory doesn't exist so the spool can't be moved into place, and shouldn't be left behind
+		vis.OuputVisualisation("target/missing-directory/test-readings.geojson");
+		assertFalse(Files.exists(Paths.get(System.getProperty("user.dir"), "target/missing-directory/test-readings.geojson")));
+		assertEquals(before, spools());
+	}
+
 }
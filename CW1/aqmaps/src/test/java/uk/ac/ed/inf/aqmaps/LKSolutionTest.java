@@ -0,0 +1,41 @@
+package uk.ac.ed.inf.aqmaps;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LKSolutionTest {
+
+	@Test
+	void testSolve() {
+		var sensors = TSPSolutionTest.sensors(33, 1);
+		var order = new LKSolution(new TSPSolutionTest.AsymmetricPather(), new Random(5678), 2).solve(sensors, sensors.get(0));
+		//every sensor should be visited exactly once, starting from the start
+		assertEquals(sensors.size(), order.size());
+		assertEquals(sensors.size(), new HashSet<Sensor>(order).size());
+		assertSame(sensors.get(0), order.get(0));
+	}
+
+	@Test
+	void testStopRule() {
+		//with no time to run the kicks should stop straight away and still return a full tour
+		var sensors = TSPSolutionTest.sensors(33, 3);
+		var solution = new LKSolution(new TSPSolutionTest.AsymmetricPather(), new Random(1), 2);
+		solution.setStopRule(1000, 0L);
+		var order = solution.solve(sensors, sensors.get(0));
+		assertEquals(sensors.size(), new HashSet<Sensor>(order).size());
+	}
+
+	@Test
+	void testSmall() {
+		//too few sensors to kick, the nearest neighbour tour is used
+		var sensors = TSPSolutionTest.sensors(2, 5);
+		var order = new LKSolution(new TSPSolutionTest.AsymmetricPather(), new Random(1), 1).solve(sensors, sensors.get(0));
+		assertEquals(sensors.size(), new HashSet<Sensor>(order).size());
+		assertSame(sensors.get(0), order.get(0));
+	}
+
+}
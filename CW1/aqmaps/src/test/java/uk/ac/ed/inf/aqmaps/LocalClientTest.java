@@ -0,0 +1,58 @@
+package uk.ac.ed.inf.aqmaps;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.gson.JsonParseException;
+
+class LocalClientTest {
+
+	private static final Path TREE = Path.of("src/test/resources");
+
+	@Test
+	void testReadsDirectory() throws IOException, InterruptedException {
+		var client = new LocalClient(TREE);
+		var nofly = client.getNoFly();
+		assertEquals(nofly.size(), 4);
+		assertEquals(nofly.get(3).size(), 11);
+		//the zones don't change so the same list is handed back
+		assertSame(nofly, client.getNoFly());
+		var sensors = client.getDestinations("01", "01", "2020");
+		assertEquals(sensors.size(), 33);
+		assertEquals(sensors.get(0).getWhat3Words(), "love.behind.orchestra");
+		assertEquals(sensors.get(0).getBattery(), 95.65336);
+		assertEquals(sensors.get(0).getReading(), "249.45");
+		var location = client.LocationFromWords("along.spill.limp");
+		assertEquals(location.longitude(), -3.191161);
+		assertEquals(location.latitude(), 55.942742);
+		assertThrows(JsonParseException.class, () -> client.getDestinations("30", "02", "2020"));
+	}
+
+	@Test
+	void testReadsZip(@TempDir Path dir) throws IOException, InterruptedException {
+		//zip the tree inside a directory, as an archive of the server folder would be
+		var zip = dir.resolve("server.zip");
+		try (var out = new ZipOutputStream(Files.newOutputStream(zip)); var files = Files.walk(TREE)) {
+			for (var file: (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+				out.putNextEntry(new ZipEntry("server/" + TREE.relativize(file).toString().replace('\\', '/')));
+				out.write(Files.readAllBytes(file));
+				out.closeEntry();
+			}
+		}
+		var client = new LocalClient(zip);
+		assertEquals(client.getNoFly().size(), 4);
+		assertEquals(client.getDestinations("01", "01", "2020").size(), 33);
+		//closing the client closes the zip, so nothing more can be read from it
+		client.close();
+		assertThrows(ClosedFileSystemException.class, () -> client.getDestinations("02", "01", "2020"));
+	}
+}
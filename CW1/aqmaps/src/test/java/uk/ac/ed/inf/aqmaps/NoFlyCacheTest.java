@@ -0,0 +1,43 @@
+package uk.ac.ed.inf.aqmaps;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NoFlyCacheTest {
+
+	@Test
+	void testZonesAreKeptAcrossRuns(@TempDir Path dir) {
+		var file = dir.resolve("no-fly-cache.bin");
+		var zone = new ArrayList<Location>();
+		zone.add(new Node(-3.1899, 55.9457));
+		zone.add(new Node(-3.1883, 55.9457));
+		zone.add(new Node(-3.1883, 55.9446));
+		var zones = new ArrayList<ArrayList<Location>>();
+		zones.add(zone);
+		new NoFlyCache(file).update("\"abc\"", "Mon Dec 14 16:01:52 UTC 2020", 42, zones);
+
+		//a new run should have the zones and validators without asking the server
+		var loaded = new NoFlyCache(file);
+		assertEquals(loaded.getETag(), "\"abc\"");
+		assertEquals(loaded.getLastModified(), "Mon Dec 14 16:01:52 UTC 2020");
+		assertEquals(loaded.getHash(), 42);
+		assertEquals(loaded.getZones().size(), 1);
+		assertEquals(loaded.getZones().get(0).size(), 3);
+		assertEquals(loaded.getZones().get(0).get(2).latitude(), 55.9446);
+		assertEquals(ForwardingPather.hashNoFlyZones(loaded.getZones()), ForwardingPather.hashNoFlyZones(zones));
+	}
+
+	@Test
+	void testBrokenFileIsIgnored(@TempDir Path dir) throws IOException {
+		var file = dir.resolve("no-fly-cache.bin");
+		Files.write(file, new byte[] {1, 2, 3});
+		assertNull(new NoFlyCache(file).getZones());
+	}
+}
@@ -0,0 +1,101 @@
+package uk.ac.ed.inf.aqmaps;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class OrienteeringSolutionTest {
+
+	/**
+	 * @return A start sensor followed by sensors scattered too widely to all be visited within the step limit, every third with a low battery
+	 */
+	static ArrayList<Sensor> spreadSensors(int count, long seed) {
+		var random = new Random(seed);
+		var sensors = new ArrayList<Sensor>();
+		sensors.add(new SensorNode("", -3.1878, 55.9444, 0.0, ""));
+		for (int i = 0; i < count; i++) {
+			var battery = i % 3 == 0 ? 5.0 : 50.0;
+			sensors.add(new SensorNode("s" + i, -3.2 + random.nextDouble()*0.03, 55.93 + random.nextDouble()*0.03, battery, "1.0"));
+		}
+		return sensors;
+	}
+
+	/**
+	 * @return The estimated steps to fly the order and return to the start
+	 */
+	private static int steps(ArrayList<Sensor> order, Pather pather) {
+		int total = 0;
+		for (int i = 0; i < order.size(); i++) {
+			total += pather.pathLength(order.get(i), order.get((i+1)%order.size()), 0.0002) - 1;
+		}
+		return total;
+	}
+
+	@Test
+	void testFitsBudget() {
+		var sensors = spreadSensors(33, 1);
+		var pather = new TSPSolutionTest.AsymmetricPather();
+		var order = new OrienteeringSolution(pather, new Random(5678)).solve(sensors, sensors.get(0));
+		//the plan should start at the start, visit no sensor twice, leave some out and fit within the budget less the margin
+		assertSame(sensors.get(0), order.get(0));
+		assertEquals(order.size(), new HashSet<Sensor>(order).size());
+		assertTrue(order.size() < sensors.size());
+		assertTrue(order.size() > 1);
+		assertTrue(steps(order, pather) <= 140);
+	}
+
+	@Test
+	void testFullTourUnchanged() {
+		//when every sensor fits the full tour is returned
+		var sensors = TSPSolutionTest.sensors(10, 2);
+		try (var solution = new OrienteeringSolution(new TSPSolutionTest.AsymmetricPather(), new Random(1), 2)) {
+			var order = solution.solve(sensors, sensors.get(0));
+			assertEquals(sensors.size(), new HashSet<Sensor>(order).size());
+		}
+	}
+
+	@Test
+	void testWeighted() {
+		//favouring the low battery sensors should keep at least as many of them
+		var sensors = spreadSensors(33, 3);
+		var pather = new TSPSolutionTest.AsymmetricPather();
+		var plain = new OrienteeringSolution(pather, new Random(1)).solve(sensors, sensors.get(0));
+		var solution = new OrienteeringSolution(pather, new Random(1));
+		solution.setWeighted(true);
+		var weighted = solution.solve(sensors, sensors.get(0));
+		assertTrue(lowBattery(weighted) >= lowBattery(plain));
+		assertTrue(steps(weighted, pather) <= 140);
+	}
+
+	@Test
+	void testUsesSetImprovers() {
+		//the stages passed to setImprovers should run on the sub-tours as well as on the full tour
+		var sizes = new ArrayList<Integer>();
+		var improvers = new ArrayList<TourImprover>();
+		improvers.add(new TourImprover() {
+			public void improve(int[] tour, int[] costs, int n) {
+				sizes.add(n);
+			}
+
+			public String getName() {
+				return "Recorder";
+			}
+		});
+		var sensors = spreadSensors(33, 1);
+		var solution = new OrienteeringSolution(new TSPSolutionTest.AsymmetricPather(), new Random(1));
+		solution.setImprovers(improvers);
+		var order = solution.solve(sensors, sensors.get(0));
+		assertEquals(sensors.size(), sizes.get(0));
+		assertTrue(sizes.size() > 1);
+		assertEquals(order.size(), sizes.get(sizes.size()-1));
+	}
+
+	private static long lowBattery(ArrayList<Sensor> order) {
+		return order.stream().filter(s -> s.getBattery() > 0 && s.getBattery() < 10).count();
+	}
+
+}
@@ -0,0 +1,30 @@
+package uk.ac.ed.inf.aqmaps;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class SpatialGridTest {
+
+	@Test
+	void testAnyWithin() {
+		var grid = new SpatialGrid(0.0003);
+		grid.add(new Node(-3.1878, 55.9444));
+		//points in the same cell and across cell boundaries in range
+		assertTrue(grid.anyWithin(new Node(-3.1878, 55.9444), 0.0003));
+		assertTrue(grid.anyWithin(new Node(-3.1876, 55.9446), 0.0003));
+		assertTrue(grid.anyWithin(new Node(-3.1880, 55.9442), 0.0003));
+		//points out of range, including one that is only within range along each axis separately
+		assertFalse(grid.anyWithin(new Node(-3.1874, 55.9444), 0.0003));
+		assertFalse(grid.anyWithin(new Node(-3.1876, 55.9441), 0.0003));
+	}
+
+	@Test
+	void testAnyWithinLargerRadius() {
+		var grid = new SpatialGrid(0.0003);
+		grid.add(new Node(0.0, 0.0));
+		assertTrue(grid.anyWithin(new Node(0.0008, 0.0), 0.001));
+		assertFalse(grid.anyWithin(new Node(0.0008, 0.0), 0.0003));
+	}
+
+}
@@ -2,6 +2,10 @@ package uk.ac.ed.inf.aqmaps;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
 import org.junit.jupiter.api.Test;
 
 class StepLoggerTest {
@@ -12,4 +16,51 @@ class StepLoggerTest {
 		assertTrue(true);
 	}
 
+	@Test
+	void testLogFormat() {
+		var logger = new StepLogger(new AStarPather());
+		var sensor = new SensorNode("along.spill.limp", -3.1903, 55.9444, 50.0, "1.0");
+		var start = new SensorNode("", -3.1909, 55.9444, 0.0, "");
+		var route = new FlightPath();
+		route.add(-3.1909, 55.9444, 0);
+		route.add(-3.1906, 55.9444, 0);
+		route.add(-3.1903, 55.9444, 0);
+		assertEquals(-1, logger.LogSteps(route, sensor));
+		var back = new FlightPath();
+		back.add(-3.1903, 55.9444, 0);
+		back.add(-3.1909, 55.9444, 180);
+		assertEquals(-1, logger.LogSteps(back, start));
+		//only the step that reaches the sensor names it, and the last line has no line break
+		assertEquals("1,-3.1909,55.9444,0,-3.1906,55.9444,null\n"
+				+ "2,-3.1906,55.9444,0,-3.1903,55.9444,along.spill.limp\n"
+				+ "3,-3.1903,55.9444,180,-3.1909,55.9444,null", logger.outputLog.toString());
+	}
+
+	@Test
+	void testStepLimit() {
+		var logger = new StepLogger(new AStarPather());
+		var route = new FlightPath();
+		for (int i = 0; i < 200; i++) {
+			route.add(-3.19 + i*0.0003, 55.9444, 0);
+		}
+		//the route is cut at the 150th step
+		assertEquals(150, logger.LogSteps(route, new SensorNode("far.away.sensor", 0.0, 0.0, 0.0, "")));
+		assertEquals(151, logger.linenum);
+	}
+
+	@Test
+	void testOutputLogFile() throws IOException {
+		var logger = new StepLogger(new AStarPather());
+		var route = new FlightPath();
+		for (int i = 0; i < 151; i++) {
+			route.add(-3.19 + i*0.0003, 55.9444, 0);
+		}
+		logger.LogSteps(route, new SensorNode("far.away.sensor", 0.0, 0.0, 0.0, ""));
+		//the log is longer than one chunk so it's written in more than one piece
+		assertTrue(logger.outputLog.length() > StepLogger.CHUNK);
+		logger.OutputLogFile("target/test-flightpath.txt");
+		var written = Files.readString(Paths.get(System.getProperty("user.dir"), "target/test-flightpath.txt"));
+		assertEquals(logger.outputLog.toString(), written);
+	}
+
 }
@@ -2,14 +2,126 @@ package uk.ac.ed.inf.aqmaps;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
 import org.junit.jupiter.api.Test;
 
 class TSPSolutionTest {
 
+	/**
+	 * Pather stub whose path lengths are the straight line distance in steps plus a penalty for flying west, so the costs aren't symmetric
+	 */
+	static class AsymmetricPather implements Pather {
+		public void setNoFlyZones(ArrayList<ArrayList<Location>> noFlyZones) {}
+		public void setBounds(double ub, double lob, double leb, double rb) {}
+		public void setStepSize(double ss) {}
+
+		public FlightPath path(Location start, Location end, double tolerance) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Integer pathLength(Location start, Location end, double tolerance) {
+			int steps = (int) Math.ceil(findDistance(start, end)/0.0003);
+			return steps + 1 + (end.longitude() < start.longitude() ? 2 : 0);
+		}
+
+		public double findDistance(Location p1, Location p2) {
+			return Math.sqrt(Math.pow(p1.longitude() - p2.longitude(),2) + Math.pow(p1.latitude() - p2.latitude(),2));
+		}
+	}
+
+	/**
+	 * @return A start sensor followed by sensors scattered around it
+	 */
+	static ArrayList<Sensor> sensors(int count, long seed) {
+		var random = new Random(seed);
+		var sensors = new ArrayList<Sensor>();
+		sensors.add(new SensorNode("", -3.1878, 55.9444, 0.0, ""));
+		for (int i = 0; i < count; i++) {
+			sensors.add(new SensorNode("s" + i, -3.192 + random.nextDouble()*0.008, 55.9427 + random.nextDouble()*0.0035, 50.0, "1.0"));
+		}
+		return sensors;
+	}
+
 	@Test
 	void testSolve() {
-//		fail("Not yet implemented");
-		assertTrue(true);
+		var sensors = sensors(33, 1);
+		var order = new TSPSolution(new AsymmetricPather(), new Random(5678), 2).solve(sensors, sensors.get(0));
+		//every sensor should be visited exactly once, starting from the start
+		assertEquals(sensors.size(), order.size());
+		assertEquals(sensors.size(), new HashSet<Sensor>(order).size());
+		assertSame(sensors.get(0), order.get(0));
+	}
+
+	@Test
+	void testDeterministic() {
+		//the ants use their own random streams so the same seed gives the same tour however many threads build them
+		var sensors = sensors(33, 2);
+		var single = new TSPSolution(new AsymmetricPather(), new Random(99), 1).solve(sensors, sensors.get(0));
+		var parallel = new TSPSolution(new AsymmetricPather(), new Random(99), 4).solve(sensors, sensors.get(0));
+		assertEquals(single, parallel);
+	}
+
+	/**
+	 * @return The tour after running the 2-Opt on it with the passed in costs
+	 */
+	private static int[] twoOpt(int[] tour, int[] costs, int n) {
+		try (var solution = new TSPSolution(new AsymmetricPather(), new Random(1), 1)) {
+			solution.n = n;
+			solution.connectionMatrix = costs;
+			var improved = tour.clone();
+			solution.Two_OPT(improved);
+			return improved;
+		}
+	}
+
+	@Test
+	void testTwoOpt() {
+		for (long seed = 0; seed < 20; seed++) {
+			int n = 5 + (int) seed;
+			var costs = TourImproverTest.randomCosts(n, seed);
+			var tour = TourImproverTest.identity(n);
+			var improved = twoOpt(tour, costs, n);
+			assertTrue(TourImproverTest.cost(improved, costs, n) <= TourImproverTest.cost(tour, costs, n));
+			var sorted = improved.clone();
+			Arrays.sort(sorted);
+			assertArrayEquals(tour, sorted);
+		}
+		//one way ring, flying from i to j costs the number of places j is ahead of i
+		int n = 6;
+		var costs = new int[n*n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				costs[i*n+j] = (j-i+n)%n;
+			}
+		}
+		//everything after the start is flown backwards, so reversing that subsection fixes it
+		assertArrayEquals(new int[] {0, 1, 2, 3, 4, 5}, twoOpt(new int[] {0, 5, 4, 3, 2, 1}, costs, n));
+		//2 to 5 are already flown the right way so reversing them would make it worse, only reversing the rest of the tour around them fixes it
+		assertArrayEquals(new int[] {1, 2, 3, 4, 5, 0}, twoOpt(new int[] {0, 2, 3, 4, 5, 1}, costs, n));
+	}
+
+	@Test
+	void testSharedPool() {
+		//a solution given a pool leaves it running when it's closed so the next one can use it
+		var sensors = sensors(10, 3);
+		var pool = new ForkJoinPool(2);
+		try {
+			try (var solution = new TSPSolution(new AsymmetricPather(), new Random(1), pool)) {
+				solution.solve(sensors, sensors.get(0));
+			}
+			assertFalse(pool.isShutdown());
+			try (var solution = new TSPSolution(new AsymmetricPather(), new Random(1), pool)) {
+				assertEquals(sensors.size(), solution.solve(sensors, sensors.get(0)).size());
+			}
+		} finally {
+			pool.shutdown();
+		}
 	}
 
 }
@@ -0,0 +1,93 @@
+package uk.ac.ed.inf.aqmaps;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TablePatherTest {
+
+	/**
+	 * AStarPather that counts how many searches it has been asked to do
+	 */
+	private static class CountingPather extends AStarPather {
+		int searches = 0;
+
+		@Override
+		public FlightPath path(Location start, Location end, double tolerance) {
+			searches++;
+			return super.path(start, end, tolerance);
+		}
+	}
+
+	private static TablePather setUp(CountingPather counter, Path file) {
+		var p = new TablePather(counter, file);
+		p.setStepSize(0.0003);
+		p.setBounds(5.0, -5.0, -5.0, 5.0);
+		p.setNoFlyZones(new ArrayList<ArrayList<Location>>());
+		return p;
+	}
+
+	@Test
+	void testWarmedPathsAreLookedUp(@TempDir Path dir) throws IOException {
+		var file = dir.resolve("table.bin");
+		var sites = new ArrayList<Location>();
+		sites.add(new Node(0.0, 0.0));
+		sites.add(new Node(0.0012, 0.0004));
+		sites.add(new Node(-0.0007, 0.0011));
+
+		var warming = new CountingPather();
+		var p = setUp(warming, file);
+		p.warm(sites, 0.0002);
+		//a site's path to itself isn't searched for
+		assertEquals(6, warming.searches);
+
+		//a new run should answer every path between different sites from the table
+		var counter = new CountingPather();
+		p = setUp(counter, file);
+		var reference = new AStarPather();
+		reference.setStepSize(0.0003);
+		reference.setBounds(5.0, -5.0, -5.0, 5.0);
+		for (var s1: sites) {
+			for (var s2: sites) {
+				var expected = reference.path(s1, s2, 0.0002);
+				assertEquals(expected.toString(), p.path(s1, s2, 0.0002).toString());
+				assertEquals(expected.size(), p.pathLength(s1, s2, 0.0002));
+			}
+		}
+		//only the paths from each site to itself are passed on, once for the path and once for its length
+		assertEquals(6, counter.searches);
+
+		//paths with another tolerance or to other locations are still searched for
+		p.path(sites.get(0), sites.get(1), 0.0001);
+		p.path(sites.get(0), new Node(0.0009, 0.0), 0.0002);
+		assertEquals(8, counter.searches);
+
+		//once closed the table is unmapped, so the file can be deleted
+		p.close();
+		Files.delete(file);
+	}
+
+	@Test
+	void testTableIsIgnoredInLatticeMode(@TempDir Path dir) throws IOException {
+		var file = dir.resolve("table.bin");
+		var sites = new ArrayList<Location>();
+		sites.add(new Node(0.0, 0.0));
+		sites.add(new Node(0.0012, 0.0004));
+		setUp(new CountingPather(), file).warm(sites, 0.0002);
+
+		//paths warmed in the continuous mode aren't the paths the discretised mode would find
+		var counter = new CountingPather();
+		var p = setUp(counter, file);
+		p.setLatticeResolution(0.0000001);
+		p.path(sites.get(0), sites.get(1), 0.0002);
+		p.pathLength(sites.get(1), sites.get(0), 0.0002);
+		assertEquals(2, counter.searches);
+	}
+
+}
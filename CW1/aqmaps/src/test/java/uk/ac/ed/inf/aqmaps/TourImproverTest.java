@@ -0,0 +1,93 @@
+package uk.ac.ed.inf.aqmaps;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class TourImproverTest {
+
+	/**
+	 * @return A random asymmetric cost matrix
+	 */
+	static int[] randomCosts(int n, long seed) {
+		var random = new Random(seed);
+		var costs = new int[n*n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				costs[i*n+j] = i == j ? 0 : 1 + random.nextInt(50);
+			}
+		}
+		return costs;
+	}
+
+	static int cost(int[] tour, int[] costs, int n) {
+		int total = costs[tour[n-1]*n+tour[0]];
+		for (int i = 1; i < n; i++) {
+			total += costs[tour[i-1]*n+tour[i]];
+		}
+		return total;
+	}
+
+	static int[] identity(int n) {
+		var tour = new int[n];
+		for (int i = 0; i < n; i++) {
+			tour[i] = i;
+		}
+		return tour;
+	}
+
+	/**
+	 * Checks the improver never makes a tour worse and always leaves a permutation of the locations
+	 */
+	private static void checkImproves(TourImprover improver) {
+		for (long seed = 0; seed < 20; seed++) {
+			int n = 5 + (int) seed;
+			var costs = randomCosts(n, seed);
+			var tour = identity(n);
+			int before = cost(tour, costs, n);
+			improver.improve(tour, costs, n);
+			assertTrue(cost(tour, costs, n) <= before);
+			var seen = new boolean[n];
+			for (int t: tour) {
+				assertFalse(seen[t]);
+				seen[t] = true;
+			}
+		}
+	}
+
+	@Test
+	void testOrOpt() {
+		checkImproves(new OrOptImprover());
+		//a tour with one location out of place along a line should be fixed by moving it
+		int n = 6;
+		var costs = new int[n*n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				costs[i*n+j] = Math.abs(i-j);
+			}
+		}
+		var tour = new int[] {0, 3, 1, 2, 4, 5};
+		new OrOptImprover().improve(tour, costs, n);
+		assertEquals(10, cost(tour, costs, n));
+	}
+
+	@Test
+	void testOrThreeOpt() {
+		checkImproves(new OrThreeOptImprover());
+		//swapping the two middle segments gives the only cheap tour
+		int n = 6;
+		var costs = new int[n*n];
+		Arrays.fill(costs, 10);
+		var best = new int[] {0, 3, 4, 1, 2, 5};
+		for (int i = 0; i < n; i++) {
+			costs[best[i]*n+best[(i+1)%n]] = 1;
+		}
+		var tour = identity(n);
+		new OrThreeOptImprover().improve(tour, costs, n);
+		assertEquals(6, cost(tour, costs, n));
+	}
+
+}
@@ -0,0 +1,44 @@
+package uk.ac.ed.inf.aqmaps;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WordsCacheTest {
+
+	@Test
+	void testLocationsAreKeptAcrossRuns(@TempDir Path dir) {
+		var file = dir.resolve("words.bin");
+		var cache = new WordsCache(file);
+		assertNull(cache.get("along.spill.limp"));
+		cache.put("along.spill.limp", new Node(-3.191161, 55.942742));
+		cache.put("posts.kicked.universally", new Node(-3.18, 55.94));
+
+		//a new run should have every location without asking the server
+		var reloaded = new WordsCache(file);
+		assertEquals(2, reloaded.size());
+		assertEquals(-3.191161, reloaded.get("along.spill.limp").longitude());
+		assertEquals(55.942742, reloaded.get("along.spill.limp").latitude());
+	}
+
+	@Test
+	void testPartialEntryIsDropped(@TempDir Path dir) throws Exception {
+		var file = dir.resolve("words.bin");
+		new WordsCache(file).put("along.spill.limp", new Node(-3.191161, 55.942742));
+		long size = Files.size(file);
+		//simulate a run that stopped half way through writing an entry
+		Files.write(file, new byte[] {0, 10, 'a', 'b'}, StandardOpenOption.APPEND);
+
+		var cache = new WordsCache(file);
+		assertEquals(1, cache.size());
+		assertEquals(size, Files.size(file));
+		cache.put("posts.kicked.universally", new Node(-3.18, 55.94));
+		assertEquals(2, new WordsCache(file).size());
+	}
+
+}